@@ -0,0 +1,52 @@
+#!/bin/sh
+# Compara el tiempo hasta la primera solicitud respondida entre dos imagenes de cliente-service.
+# Uso: scripts/benchmark-arranque.sh <imagen_actual> <imagen_nueva> [repeticiones] [archivo_resultados]
+#
+# Las dos imagenes reciben la misma configuracion efectiva. No se usa EUREKA_CLIENT_ENABLED=false porque la imagen AOT
+# la ignora (la condicion queda fijada en el build): en ambas el cliente de Eureka existe pero no contacta al servidor.
+# Los resultados se agregan a archivo_resultados (por defecto scripts/resultados-arranque.txt) para dejarlos registrados.
+#
+# Requiere la base de docker-compose levantada (docker compose up -d db).
+# Para construir la imagen anterior: git worktree add /tmp/base <commit> && docker build -t imagen_clientes:base /tmp/base
+set -eu
+
+IMAGEN_A="$1"
+IMAGEN_B="$2"
+REPETICIONES="${3:-5}"
+RESULTADOS="${4:-$(dirname "$0")/resultados-arranque.txt}"
+RED="cliente-network"
+PUERTO=18082
+URL="http://localhost:${PUERTO}/api/clientes/todos"
+
+medir() {
+    imagen="$1"
+    inicio=$(date +%s%N)
+    contenedor=$(docker run -d --rm --network "$RED" -p "${PUERTO}:8080" \
+        -e SPRING_DATASOURCE_URL=jdbc:mysql://db:3306/clientes_db \
+        -e SPRING_DATASOURCE_USERNAME=clientes_usuario \
+        -e SPRING_DATASOURCE_PASSWORD=clientes_password \
+        -e SPRING_JPA_HIBERNATE_DDL_AUTO=update \
+        -e SPRING_JPA_DATABASE_PLATFORM=org.hibernate.dialect.MySQLDialect \
+        -e EUREKA_CLIENT_REGISTERWITHEUREKA=false \
+        -e EUREKA_CLIENT_FETCHREGISTRY=false \
+        "$imagen")
+    until curl -sf -o /dev/null "$URL"; do
+        sleep 0.05
+    done
+    fin=$(date +%s%N)
+    docker stop "$contenedor" > /dev/null
+    echo $(( (fin - inicio) / 1000000 ))
+}
+
+echo "# $(date -u +%Y-%m-%dT%H:%M:%SZ) $(uname -m), $REPETICIONES repeticiones" >> "$RESULTADOS"
+for imagen in "$IMAGEN_A" "$IMAGEN_B"; do
+    total=0
+    i=0
+    while [ "$i" -lt "$REPETICIONES" ]; do
+        ms=$(medir "$imagen")
+        echo "$imagen corrida $((i + 1)): ${ms} ms hasta la primera solicitud"
+        total=$((total + ms))
+        i=$((i + 1))
+    done
+    echo "$imagen promedio: $((total / REPETICIONES)) ms" | tee -a "$RESULTADOS"
+done
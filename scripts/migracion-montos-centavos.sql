@@ -0,0 +1,24 @@
+-- Migracion unica de los montos en pesos guardados como float a las columnas en centavos (BIGINT).
+--   cliente.maximo_descubierto   -> cliente.maximo_descubierto_centavos
+--   obra.presupuesto_estimado    -> obra.presupuesto_estimado_centavos
+--
+-- Se ejecuta una sola vez en cada shard (MySQL), con todas las replicas de cliente-service detenidas y antes
+-- de levantar la version que usa centavos: asi ninguna replica lee montos en 0 ni arma snapshots de /todos
+-- con datos a medio migrar, y no hay dos procesos migrando a la vez.
+--   mysql -h <host> -u <usuario> -p clientes_db < scripts/migracion-montos-centavos.sql
+--
+-- El float se lleva primero a DECIMAL con 2 decimales (su valor en pesos) y recien despues a centavos,
+-- para no arrastrar el error binario del float (ej: 1234.56 se guarda como 1234.56005859375).
+-- Los ALTER TABLE de MySQL confirman la transaccion; si el script se corta, verificar que columnas quedaron antes de repetirlo.
+
+ALTER TABLE cliente ADD COLUMN maximo_descubierto_centavos BIGINT NOT NULL DEFAULT 0;
+UPDATE cliente
+   SET maximo_descubierto_centavos = CAST(CAST(maximo_descubierto AS DECIMAL(20, 2)) * 100 AS SIGNED)
+ WHERE maximo_descubierto IS NOT NULL;
+ALTER TABLE cliente DROP COLUMN maximo_descubierto;
+
+ALTER TABLE obra ADD COLUMN presupuesto_estimado_centavos BIGINT NOT NULL DEFAULT 0;
+UPDATE obra
+   SET presupuesto_estimado_centavos = CAST(CAST(presupuesto_estimado AS DECIMAL(20, 2)) * 100 AS SIGNED)
+ WHERE presupuesto_estimado IS NOT NULL;
+ALTER TABLE obra DROP COLUMN presupuesto_estimado;
@@ -0,0 +1,158 @@
+package jeronimo.margitic.config;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Clock;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+//Soporte para el header Idempotency-Key en endpoints de escritura.
+//La primera solicitud con una clave ejecuta la operacion; los reintentos con la misma clave reciben la misma respuesta
+//(si la operacion termino) o esperan a que termine la original (si sigue en curso), sin repetir el trabajo.
+//La cache esta acotada en cantidad de entradas y cada entrada vence despues de un tiempo.
+//Las respuestas 5xx, 429 y las excepciones no se guardan, para que el reintento vuelva a ejecutar; los controladores
+//responden 4xx para errores de los datos (400 validacion, 409 conflicto con la BD) y 5xx para el resto.
+//Las entradas en curso no se desalojan: un reintento tiene que esperar a la original, no ejecutar otra vez.
+@Component
+public class CacheIdempotencia {
+
+    public static final String HEADER = "Idempotency-Key";
+
+    private final ObjectMapper objectMapper;
+    private final int maximoEntradas;
+    private final long ttlSegundos;
+    private final long esperaMaximaSegundos;
+    private final Clock reloj;
+
+    //Ordenado por fecha de creacion, la primera entrada es la mas vieja.
+    private final LinkedHashMap<String, Entrada> entradas = new LinkedHashMap<>();
+
+    private static class Entrada {
+        private final byte[] huella;    //SHA-256 del cuerpo en JSON, para detectar una clave reutilizada con otros datos.
+        private final long creada;
+        private final CompletableFuture<ResponseEntity<?>> resultado = new CompletableFuture<>();
+
+        private Entrada(byte[] huella, long creada) {
+            this.huella = huella;
+            this.creada = creada;
+        }
+    }
+
+    @Autowired
+    public CacheIdempotencia(ObjectMapper objectMapper,
+            @Value("${idempotencia.maximo-entradas:10000}") int maximoEntradas,
+            @Value("${idempotencia.ttl-segundos:600}") long ttlSegundos,
+            @Value("${idempotencia.espera-maxima-segundos:30}") long esperaMaximaSegundos) {
+        this(objectMapper, maximoEntradas, ttlSegundos, esperaMaximaSegundos, Clock.systemUTC());
+    }
+
+    //Los tests pasan un reloj propio para simular el vencimiento.
+    CacheIdempotencia(ObjectMapper objectMapper, int maximoEntradas, long ttlSegundos, long esperaMaximaSegundos, Clock reloj) {
+        this.objectMapper = objectMapper;
+        this.maximoEntradas = maximoEntradas;
+        this.ttlSegundos = ttlSegundos;
+        this.esperaMaximaSegundos = esperaMaximaSegundos;
+        this.reloj = reloj;
+    }
+
+    //Ejecuta la accion una sola vez por (operacion, clave). Sin clave se ejecuta siempre.
+    @SuppressWarnings("unchecked")
+    public <T> ResponseEntity<T> ejecutar(String operacion, String clave, Object cuerpo, Supplier<ResponseEntity<T>> accion) {
+        if (clave == null || clave.isBlank()) {
+            return accion.get();
+        }
+        String id = operacion + ":" + clave;
+        byte[] huella = huella(cuerpo);
+        Entrada entrada;
+        boolean original;
+        synchronized (entradas) {
+            long ahora = reloj.millis();
+            desalojar(ahora);
+            entrada = entradas.get(id);
+            original = entrada == null;
+            if (original) {
+                entrada = new Entrada(huella, ahora);
+                entradas.put(id, entrada);
+            }
+        }
+
+        if (!original) {
+            if (!Arrays.equals(entrada.huella, huella)) {
+                //La misma clave no se puede usar con otro cuerpo.
+                return ResponseEntity.unprocessableEntity().build();
+            }
+            try {
+                return (ResponseEntity<T>) entrada.resultado.get(esperaMaximaSegundos, TimeUnit.SECONDS);
+            } catch (TimeoutException e) {
+                return ResponseEntity.status(HttpStatus.CONFLICT).build();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return ResponseEntity.status(HttpStatus.CONFLICT).build();
+            } catch (ExecutionException e) {
+                return ResponseEntity.internalServerError().build();
+            }
+        }
+
+        try {
+            ResponseEntity<T> respuesta = accion.get();
+            if (respuesta.getStatusCode().is5xxServerError() || respuesta.getStatusCode() == HttpStatus.TOO_MANY_REQUESTS) {
+                quitar(id, entrada);
+            }
+            entrada.resultado.complete(respuesta);
+            return respuesta;
+        } catch (RuntimeException e) {
+            quitar(id, entrada);
+            entrada.resultado.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    //Resumen del cuerpo serializado: dos cuerpos con los mismos datos dan la misma huella.
+    private byte[] huella(Object cuerpo) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(objectMapper.writeValueAsBytes(cuerpo));
+        } catch (JsonProcessingException | NoSuchAlgorithmException e) {
+            throw new IllegalStateException("No se pudo calcular la huella del cuerpo.", e);
+        }
+    }
+
+    //Quita las entradas vencidas y, si se supera el maximo, las mas viejas; las que siguen en curso se saltean.
+    private void desalojar(long ahora) {
+        long limite = ahora - TimeUnit.SECONDS.toMillis(ttlSegundos);
+        Iterator<Map.Entry<String, Entrada>> it = entradas.entrySet().iterator();
+        int sobrantes = entradas.size() - maximoEntradas + 1;
+        while (it.hasNext()) {
+            Entrada entrada = it.next().getValue();
+            if (entrada.creada >= limite && sobrantes <= 0) {
+                break;
+            }
+            if (!entrada.resultado.isDone()) {
+                continue;
+            }
+            it.remove();
+            sobrantes--;
+        }
+    }
+
+    private void quitar(String id, Entrada entrada) {
+        synchronized (entradas) {
+            entradas.remove(id, entrada);
+        }
+    }
+}
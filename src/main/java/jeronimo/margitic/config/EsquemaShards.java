@@ -0,0 +1,76 @@
+package jeronimo.margitic.config;
+
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.hibernate.boot.Metadata;
+import org.hibernate.boot.spi.BootstrapContext;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.integrator.spi.Integrator;
+import org.hibernate.jpa.boot.spi.IntegratorProvider;
+import org.hibernate.service.ServiceRegistry;
+import org.hibernate.service.spi.SessionFactoryServiceRegistry;
+import org.hibernate.tool.hbm2ddl.SchemaUpdate;
+import org.hibernate.tool.schema.TargetType;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+
+//Hibernate aplica ddl-auto solo sobre la conexion por defecto (shard 0).
+//Este componente toma el modelo que arma Hibernate y crea/actualiza las tablas que falten en el resto de los shards,
+//antes de que la aplicacion empiece a atender solicitudes.
+//Con create y create-drop los shards 1..N tambien se actualizan (no se borran), para no perder datos si el valor quedo de una prueba.
+@Component
+@Lazy(false)
+public class EsquemaShards implements HibernatePropertiesCustomizer, SmartInitializingSingleton {
+
+    private static final Set<String> MODOS_CON_ESQUEMA = Set.of("update", "create", "create-drop");
+
+    private final ShardProperties properties;
+    private final String ddlAuto;
+
+    private volatile Metadata metadata;
+    private volatile ServiceRegistry serviceRegistry;
+
+    public EsquemaShards(ShardProperties properties, @Value("${spring.jpa.hibernate.ddl-auto:none}") String ddlAuto) {
+        this.properties = properties;
+        this.ddlAuto = ddlAuto.trim();
+    }
+
+    //Registra un Integrator para quedarse con el modelo (Metadata) al construirse el EntityManagerFactory.
+    @Override
+    public void customize(Map<String, Object> hibernateProperties) {
+        Integrator integrador = new Integrator() {
+            @Override
+            public void integrate(Metadata metadata, BootstrapContext bootstrapContext, SessionFactoryImplementor sessionFactory) {
+                EsquemaShards.this.metadata = metadata;
+                EsquemaShards.this.serviceRegistry = sessionFactory.getServiceRegistry();
+            }
+
+            @Override
+            public void disintegrate(SessionFactoryImplementor sessionFactory, SessionFactoryServiceRegistry serviceRegistry) {
+            }
+        };
+        hibernateProperties.put("hibernate.integrator_provider", (IntegratorProvider) () -> List.of(integrador));
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        if (!MODOS_CON_ESQUEMA.contains(ddlAuto) || metadata == null) {
+            return;
+        }
+        for (int shard = 1; shard < properties.cantidadShards(); shard++) {
+            Integer anterior = ShardContext.actual();
+            ShardContext.establecer(shard);
+            try {
+                new SchemaUpdate().setHaltOnError(true).execute(EnumSet.of(TargetType.DATABASE), metadata, serviceRegistry);
+            } finally {
+                ShardContext.establecer(anterior);
+            }
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package jeronimo.margitic.config;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.stereotype.Component;
+
+import jeronimo.margitic.service.EstadoCreditoClientes;
+
+//Endpoint de actuator (/actuator/estadocredito) para verificar la tabla EstadoCreditoClientes contra la BD.
+@Component
+@Endpoint(id = "estadocredito")
+public class EstadoCreditoEndpoint {
+
+    @Autowired
+    EstadoCreditoClientes estadoCreditoClientes;
+
+    //GET: retorna la cantidad de clientes en la tabla y los ids que no coinciden con la BD.
+    @ReadOperation
+    public Map<String, Object> verificar() {
+        List<Integer> diferencias = estadoCreditoClientes.verificarConsistencia();
+        Map<String, Object> respuesta = new LinkedHashMap<>();
+        respuesta.put("clientes", estadoCreditoClientes.cantidad());
+        respuesta.put("consistente", diferencias.isEmpty());
+        respuesta.put("diferencias", diferencias);
+        return respuesta;
+    }
+
+    //POST: vuelve a cargar la tabla desde la BD.
+    @WriteOperation
+    public Map<String, Object> recargar() {
+        estadoCreditoClientes.cargar();
+        return verificar();
+    }
+}
@@ -0,0 +1,82 @@
+package jeronimo.margitic.config;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+//Limite de concurrencia adaptativo basado en el gradiente de latencia.
+//Se compara la latencia de cada solicitud con una media de largo plazo: si la latencia sube (se forma cola
+//en MySQL o en pedido-service) el limite baja; si se mantiene, el limite crece de a poco (sqrt del limite).
+//Los errores del servidor reducen el limite multiplicativamente.
+public class LimitadorAdaptativo {
+
+    //Cuanto puede subir la latencia respecto de la media antes de reducir el limite.
+    private static final double TOLERANCIA = 1.5;
+    private static final double SUAVIZADO = 0.2;
+    private static final double PESO_RTT_LARGO = 0.05;
+    private static final double REDUCCION_POR_ERROR = 0.9;
+
+    private final int limiteMinimo;
+    private final int limiteMaximo;
+    private final AtomicInteger enCurso = new AtomicInteger();
+
+    private volatile int limite;
+    private double limiteEstimado;
+    private double rttLargoNanos;
+
+    public LimitadorAdaptativo(int limiteInicial, int limiteMinimo, int limiteMaximo) {
+        this.limiteMinimo = limiteMinimo;
+        this.limiteMaximo = limiteMaximo;
+        this.limiteEstimado = limiteInicial;
+        this.limite = limiteInicial;
+    }
+
+    //Intenta ocupar un lugar. Las solicitudes no criticas solo pueden usar una fraccion del limite,
+    //el resto queda reservado para las criticas.
+    public boolean adquirir(boolean critica, double fraccionNoCritica) {
+        int tope = critica ? limite : Math.max(1, (int) (limite * fraccionNoCritica));
+        while (true) {
+            int actual = enCurso.get();
+            if (actual >= tope) {
+                return false;
+            }
+            if (enCurso.compareAndSet(actual, actual + 1)) {
+                return true;
+            }
+        }
+    }
+
+    //Libera el lugar y ajusta el limite con la latencia medida.
+    public void liberar(long rttNanos, boolean exitosa) {
+        int enVuelo = enCurso.getAndDecrement();
+        actualizarLimite(rttNanos, exitosa, enVuelo);
+    }
+
+    private synchronized void actualizarLimite(long rttNanos, boolean exitosa, int enVuelo) {
+        if (!exitosa) {
+            limiteEstimado *= REDUCCION_POR_ERROR;
+        } else {
+            rttLargoNanos = rttLargoNanos == 0 ? rttNanos : rttLargoNanos * (1 - PESO_RTT_LARGO) + rttNanos * PESO_RTT_LARGO;
+            double gradiente = Math.max(0.5, Math.min(1.0, TOLERANCIA * rttLargoNanos / Math.max(1, rttNanos)));
+            double nuevo = limiteEstimado * gradiente + Math.sqrt(limiteEstimado);
+            //Si se usa menos de la mitad del limite no hay evidencia para subirlo.
+            if (enVuelo * 2 < limiteEstimado) {
+                nuevo = Math.min(nuevo, limiteEstimado);
+            }
+            limiteEstimado = limiteEstimado * (1 - SUAVIZADO) + nuevo * SUAVIZADO;
+        }
+        limiteEstimado = Math.max(limiteMinimo, Math.min(limiteMaximo, limiteEstimado));
+        limite = (int) limiteEstimado;
+    }
+
+    public int limite() {
+        return limite;
+    }
+
+    public int enCurso() {
+        return enCurso.get();
+    }
+
+    //Valor sin redondear del limite, para los tests.
+    synchronized double limiteEstimado() {
+        return limiteEstimado;
+    }
+}
@@ -0,0 +1,108 @@
+package jeronimo.margitic.config;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+//Descarta solicitudes cuando un grupo de endpoints supera su limite de concurrencia (LimitadorAdaptativo),
+//respondiendo 503 de inmediato en vez de dejar que se acumulen hilos de Tomcat.
+//Grupos: "saldo" (verificarSaldo), "obras" (crear y finalizar obras) y "general" (resto de /api).
+//Cada ruta se clasifica como critica o no (ver RUTAS); las criticas tienen reservada una parte del limite.
+//Actuator no se limita, para que los health checks sigan respondiendo.
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 10)
+public class LimitadorConcurrenciaFilter extends OncePerRequestFilter {
+
+    private record Ruta(String metodo, String prefijo, String grupo, boolean critica) {
+    }
+
+    //Se usa la primera ruta que coincide con el metodo y el comienzo de la uri.
+    //verificarSaldo es critica aunque sea POST: la usa pedido-service antes de aceptar cada pedido.
+    //Los listados completos (/todos) son los mas caros y se pueden reintentar, por eso no son criticos.
+    //Sin coincidencia: grupo general, criticas solo las lecturas (GET).
+    private static final List<Ruta> RUTAS = List.of(
+        new Ruta("POST", "/api/clientes/verificarSaldo", "saldo", true),
+        new Ruta("GET", "/api/clientes/todos", "general", false),
+        new Ruta("GET", "/api/obras/todos", "general", false),
+        new Ruta("GET", "/api/obras/solicitudes", "general", true),
+        new Ruta("POST", "/api/obras/crear", "obras", false),
+        new Ruta("POST", "/api/obras/finalizar", "obras", false)
+    );
+
+    private final boolean habilitado;
+    private final double fraccionNoCritica;
+    private final Map<String, LimitadorAdaptativo> limitadores = new LinkedHashMap<>();
+    private final MeterRegistry meterRegistry;
+
+    public LimitadorConcurrenciaFilter(MeterRegistry meterRegistry,
+            @Value("${limitador.habilitado:true}") boolean habilitado,
+            @Value("${limitador.limite-inicial:20}") int limiteInicial,
+            @Value("${limitador.limite-minimo:4}") int limiteMinimo,
+            @Value("${limitador.limite-maximo:200}") int limiteMaximo,
+            @Value("${limitador.fraccion-no-critica:0.8}") double fraccionNoCritica) {
+        this.meterRegistry = meterRegistry;
+        this.habilitado = habilitado;
+        this.fraccionNoCritica = fraccionNoCritica;
+        for (String grupo : new String[]{"saldo", "obras", "general"}) {
+            LimitadorAdaptativo limitador = new LimitadorAdaptativo(limiteInicial, limiteMinimo, limiteMaximo);
+            limitadores.put(grupo, limitador);
+            Gauge.builder("limitador.limite", limitador, LimitadorAdaptativo::limite)
+                .tag("grupo", grupo)
+                .register(meterRegistry);
+            Gauge.builder("limitador.en_curso", limitador, LimitadorAdaptativo::enCurso)
+                .tag("grupo", grupo)
+                .register(meterRegistry);
+        }
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !habilitado || !request.getRequestURI().startsWith("/api/");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
+        Ruta ruta = ruta(request.getMethod(), request.getRequestURI());
+        String grupo = ruta.grupo();
+        boolean critica = ruta.critica();
+        LimitadorAdaptativo limitador = limitadores.get(grupo);
+        if (!limitador.adquirir(critica, fraccionNoCritica)) {
+            meterRegistry.counter("limitador.rechazos", "grupo", grupo, "critica", String.valueOf(critica)).increment();
+            response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+            response.setHeader("Retry-After", "1");
+            return;
+        }
+        long inicio = System.nanoTime();
+        boolean exitosa = false;
+        try {
+            filterChain.doFilter(request, response);
+            exitosa = response.getStatus() < 500;
+        } finally {
+            limitador.liberar(System.nanoTime() - inicio, exitosa);
+        }
+    }
+
+    private static Ruta ruta(String metodo, String uri) {
+        for (Ruta ruta : RUTAS) {
+            if (ruta.metodo().equals(metodo) && uri.startsWith(ruta.prefijo())) {
+                return ruta;
+            }
+        }
+        return new Ruta(metodo, uri, "general", "GET".equals(metodo));
+    }
+}
@@ -0,0 +1,25 @@
+package jeronimo.margitic.config;
+
+//Guarda el shard sobre el que opera el hilo actual.
+//ShardRoutingDataSource lo lee al momento de pedir una conexion, por lo que debe estar
+//establecido antes de que empiece la transaccion (ver ShardRouter).
+public final class ShardContext {
+
+    private static final ThreadLocal<Integer> SHARD_ACTUAL = new ThreadLocal<>();
+
+    private ShardContext() {
+    }
+
+    //Retorna el shard actual, o null si no se establecio ninguno (se usa el shard 0).
+    public static Integer actual() {
+        return SHARD_ACTUAL.get();
+    }
+
+    public static void establecer(Integer shard) {
+        if (shard == null) {
+            SHARD_ACTUAL.remove();
+        } else {
+            SHARD_ACTUAL.set(shard);
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package jeronimo.margitic.config;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import lombok.Data;
+
+//Configuracion del particionado de clientes y obras.
+//Con shards.habilitado=false (por defecto) se usa unicamente spring.datasource.
+@Data
+@ConfigurationProperties(prefix = "shards")
+public class ShardProperties {
+
+    private boolean habilitado = false;
+
+    //Conexiones maximas del pool de cada shard.
+    private int conexionesPorShard = 10;
+
+    //Cantidad de hilos usados para consultar todos los shards en paralelo (validacion de dni, busquedas por id, /todos).
+    //Con 0 (por defecto) se usa un hilo por conexion de todos los shards: cada tarea ocupa una conexion de un shard,
+    //asi que mas hilos solo esperarian al pool y menos limitarian la cantidad de consultas en paralelo.
+    private int hilosConsulta = 0;
+
+    //Si es true, al iniciar se mueven los clientes que no estan en el shard que les corresponde.
+    private boolean rebalancear = false;
+
+    //Un datasource por shard; el indice en la lista es el numero de shard.
+    private List<Fuente> datasources = new ArrayList<>();
+
+    @Data
+    public static class Fuente {
+        private String url;
+        private String username;
+        private String password;
+    }
+
+    public int cantidadShards() {
+        return habilitado ? Math.max(1, datasources.size()) : 1;
+    }
+
+    public int hilosConsultaEfectivos() {
+        return hilosConsulta > 0 ? hilosConsulta : cantidadShards() * conexionesPorShard;
+    }
+}
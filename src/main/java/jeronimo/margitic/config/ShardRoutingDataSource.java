@@ -0,0 +1,12 @@
+package jeronimo.margitic.config;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+//DataSource que deriva cada conexion al shard establecido en ShardContext.
+public class ShardRoutingDataSource extends AbstractRoutingDataSource {
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        return ShardContext.actual();
+    }
+}
@@ -0,0 +1,54 @@
+package jeronimo.margitic.config;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.sql.DataSource;
+
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+@Configuration
+@EnableConfigurationProperties(ShardProperties.class)
+public class ShardingConfig {
+
+    //Reemplaza al datasource de spring.datasource. Se define siempre (sin @ConditionalOnProperty) porque la imagen
+    //de produccion (AOT) fija las condiciones al momento del build; shards.habilitado se evalua aca, al arrancar.
+    //Deshabilitado, el unico shard es el datasource de spring.datasource.
+    //Hibernate (ddl-auto) crea el esquema sobre el shard 0 y EsquemaShards sobre el resto.
+    @Bean
+    @Primary
+    public DataSource shardRoutingDataSource(ShardProperties properties, DataSourceProperties dataSourceProperties) {
+        Map<Object, Object> shards = new HashMap<>();
+        if (!properties.isHabilitado()) {
+            shards.put(0, dataSourceProperties.initializeDataSourceBuilder().build());
+        } else {
+            if (properties.getDatasources().isEmpty()) {
+                throw new IllegalStateException("shards.habilitado=true requiere al menos un shards.datasources[i].url");
+            }
+            for (int i = 0; i < properties.getDatasources().size(); i++) {
+                ShardProperties.Fuente fuente = properties.getDatasources().get(i);
+                HikariDataSource pool = DataSourceBuilder.create()
+                    .type(HikariDataSource.class)
+                    .url(fuente.getUrl())
+                    .username(fuente.getUsername())
+                    .password(fuente.getPassword())
+                    .build();
+                pool.setMaximumPoolSize(properties.getConexionesPorShard());
+                pool.setPoolName("shard-" + i);
+                shards.put(i, pool);
+            }
+        }
+        ShardRoutingDataSource routing = new ShardRoutingDataSource();
+        routing.setTargetDataSources(shards);
+        routing.setDefaultTargetDataSource(shards.get(0));
+        routing.afterPropertiesSet();
+        return routing;
+    }
+}
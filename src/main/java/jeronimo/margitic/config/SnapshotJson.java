@@ -0,0 +1,187 @@
+package jeronimo.margitic.config;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+import java.util.zip.GZIPOutputStream;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.DigestUtils;
+
+//Listado serializado a JSON de antemano.
+//Cada snapshot guarda dos versiones: la local, que se incrementa con invalidar() en cada escritura de esta replica,
+//y la de la BD (un resumen de las tablas que cambia con cualquier escritura, de esta u otra replica).
+//Mientras la version local no cambie el listado se sirve directamente desde los bytes guardados (y opcionalmente
+//ya comprimidos). Pasado intervaloVerificacionMs desde la ultima verificacion se sigue sirviendo el mismo snapshot
+//mientras el hilo escritor compara la version de la BD y lo reconstruye si cambio; asi un cambio hecho en otra
+//replica se ve poco despues de ese intervalo, sin que las solicitudes vayan a la BD.
+//La verificacion y la reconstruccion las hace un unico hilo, fuera del hilo de la solicitud.
+//Si la reconstruccion falla se espera un tiempo creciente antes de reintentar, para no cargar una BD con problemas.
+public class SnapshotJson {
+
+    private static final long ESPERA_INICIAL_MS = 500;
+    private static final long ESPERA_MAXIMA_MS = 30_000;
+    //Si no se pudo verificar en este tiempo (ej: BD caida) se deja de servir el snapshot.
+    private static final long ANTIGUEDAD_MAXIMA_MS = 60_000;
+
+    public record Snapshot(long version, long versionBd, byte[] json, byte[] gzip, String etag, String etagGzip) {
+    }
+
+    private final String nombre;
+    //Retorna un arreglo JSON por shard; se unen en un unico arreglo.
+    private final Supplier<List<byte[]>> generador;
+    //Resumen en la BD de las tablas que forman el listado; solo se compara por igualdad.
+    private final LongSupplier versionBd;
+    private final long intervaloVerificacionMs;
+    private final boolean comprimir;
+
+    private final AtomicLong version = new AtomicLong(1);
+    private final AtomicBoolean actualizacionPendiente = new AtomicBoolean();
+    private final ExecutorService escritor;
+    private volatile Snapshot actual;
+    private volatile long verificadoEn;    //System.currentTimeMillis() de la ultima vez que actual coincidio con la BD.
+    private volatile long proximoIntento;
+    private int fallasSeguidas;            //Solo lo usa el hilo escritor.
+
+    public SnapshotJson(String nombre, Supplier<List<byte[]>> generador, LongSupplier versionBd, long intervaloVerificacionMs, boolean comprimir) {
+        this.nombre = nombre;
+        this.generador = generador;
+        this.versionBd = versionBd;
+        this.intervaloVerificacionMs = intervaloVerificacionMs;
+        this.comprimir = comprimir;
+        this.escritor = Executors.newSingleThreadExecutor(r -> {
+            Thread hilo = new Thread(r, "snapshot-" + nombre);
+            hilo.setDaemon(true);
+            return hilo;
+        });
+    }
+
+    //Se llama despues de cada escritura ya confirmada en la BD.
+    public void invalidar() {
+        version.incrementAndGet();
+        programarActualizacion();
+    }
+
+    //Retorna el snapshot, o null si hay que responder por el camino normal (no hay snapshot, hubo una escritura
+    //en esta replica o no se pudo verificar en ANTIGUEDAD_MAXIMA_MS). Si paso el intervalo de verificacion
+    //se programa la verificacion contra la BD y mientras tanto se sigue sirviendo el snapshot actual.
+    public Snapshot vigente() {
+        Snapshot snapshot = actual;
+        if (snapshot == null || snapshot.version() != version.get()) {
+            programarActualizacion();
+            return null;
+        }
+        long antiguedad = System.currentTimeMillis() - verificadoEn;
+        if (antiguedad >= intervaloVerificacionMs) {
+            programarActualizacion();
+            if (antiguedad >= ANTIGUEDAD_MAXIMA_MS) {
+                return null;
+            }
+        }
+        return snapshot;
+    }
+
+    //Arma la respuesta HTTP del snapshot: 304 si el ETag coincide, gzip si el cliente lo acepta.
+    public static ResponseEntity<byte[]> respuesta(Snapshot snapshot, String ifNoneMatch, String acceptEncoding) {
+        boolean gzip = snapshot.gzip() != null && acceptEncoding != null && acceptEncoding.contains("gzip");
+        String etag = gzip ? snapshot.etagGzip() : snapshot.etag();
+        if (ifNoneMatch != null && (ifNoneMatch.contains(etag) || ifNoneMatch.trim().equals("*"))) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                .eTag(etag)
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING)
+                .build();
+        }
+        ResponseEntity.BodyBuilder respuesta = ResponseEntity.ok()
+            .eTag(etag)
+            .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING)
+            .contentType(MediaType.APPLICATION_JSON);
+        if (gzip) {
+            return respuesta.header(HttpHeaders.CONTENT_ENCODING, "gzip").body(snapshot.gzip());
+        }
+        return respuesta.body(snapshot.json());
+    }
+
+    public void cerrar() {
+        escritor.shutdownNow();
+    }
+
+    private void programarActualizacion() {
+        if (System.currentTimeMillis() < proximoIntento) {
+            return;
+        }
+        if (actualizacionPendiente.compareAndSet(false, true)) {
+            escritor.execute(this::actualizar);
+        }
+    }
+
+    //Si el snapshot coincide con la version de la BD solo se marca como verificado; si no, se reconstruye.
+    private void actualizar() {
+        //Se libera antes de leer las versiones, asi una escritura durante la reconstruccion programa otra.
+        actualizacionPendiente.set(false);
+        long inicio = System.currentTimeMillis();
+        long versionLeida = version.get();
+        try {
+            long versionBdLeida = versionBd.getAsLong();
+            Snapshot snapshot = actual;
+            if (snapshot == null || snapshot.version() != versionLeida || snapshot.versionBd() != versionBdLeida) {
+                byte[] json = unir(generador.get());
+                byte[] gzip = comprimir ? comprimir(json) : null;
+                //El ETag depende del contenido, asi coincide entre replicas.
+                String hash = nombre + "-" + DigestUtils.md5DigestAsHex(json);
+                actual = new Snapshot(versionLeida, versionBdLeida, json, gzip, "\"" + hash + "\"", "\"" + hash + "-gzip\"");
+            }
+            //La version de la BD se leyo antes de generar: un cambio posterior se detecta en la proxima verificacion.
+            verificadoEn = inicio;
+            fallasSeguidas = 0;
+            proximoIntento = 0;
+        } catch (RuntimeException e) {
+            fallasSeguidas++;
+            long espera = Math.min(ESPERA_MAXIMA_MS, ESPERA_INICIAL_MS << Math.min(fallasSeguidas - 1, 16));
+            proximoIntento = System.currentTimeMillis() + espera;
+            System.err.println("Error: no se pudo reconstruir el snapshot de " + nombre + " (reintento en " + espera + " ms): " + e.getMessage());
+        }
+    }
+
+    //Une varios arreglos JSON ("[a,b]", "[c]") en uno solo ("[a,b,c]").
+    private static byte[] unir(List<byte[]> arreglos) {
+        if (arreglos.size() == 1) {
+            return arreglos.get(0);
+        }
+        ByteArrayOutputStream salida = new ByteArrayOutputStream();
+        salida.write('[');
+        boolean primero = true;
+        for (byte[] arreglo : arreglos) {
+            //Se saltea un arreglo vacio ("[]").
+            if (arreglo.length <= 2) {
+                continue;
+            }
+            if (!primero) {
+                salida.write(',');
+            }
+            salida.write(arreglo, 1, arreglo.length - 2);
+            primero = false;
+        }
+        salida.write(']');
+        return salida.toByteArray();
+    }
+
+    private static byte[] comprimir(byte[] json) {
+        ByteArrayOutputStream salida = new ByteArrayOutputStream(json.length / 4 + 64);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(salida)) {
+            gzip.write(json);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return salida.toByteArray();
+    }
+}
@@ -0,0 +1,56 @@
+package jeronimo.margitic.config;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+//Registra cuanto tarda una replica en estar lista y en responder su primera solicitud, medido desde el inicio de la JVM.
+//Se publica en las metricas arranque.listo y arranque.primera.solicitud.
+@Component
+public class TiempoArranque extends OncePerRequestFilter {
+
+    private final long inicioJvm = ManagementFactory.getRuntimeMXBean().getStartTime();
+    private final AtomicBoolean primeraSolicitud = new AtomicBoolean(true);
+    private final MeterRegistry meterRegistry;
+
+    private volatile long msHastaListo;
+    private volatile long msHastaPrimeraSolicitud;
+
+    public TiempoArranque(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void aplicacionLista() {
+        msHastaListo = System.currentTimeMillis() - inicioJvm;
+        TimeGauge.builder("arranque.listo", this, TimeUnit.MILLISECONDS, t -> t.msHastaListo)
+            .description("Tiempo desde el inicio de la JVM hasta que la aplicacion esta lista")
+            .register(meterRegistry);
+        System.out.println("Aplicacion lista en " + msHastaListo + " ms desde el inicio de la JVM.");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
+        filterChain.doFilter(request, response);
+        if (primeraSolicitud.get() && primeraSolicitud.compareAndSet(true, false)) {
+            msHastaPrimeraSolicitud = System.currentTimeMillis() - inicioJvm;
+            TimeGauge.builder("arranque.primera.solicitud", this, TimeUnit.MILLISECONDS, t -> t.msHastaPrimeraSolicitud)
+                .description("Tiempo desde el inicio de la JVM hasta responder la primera solicitud")
+                .register(meterRegistry);
+            System.out.println("Primera solicitud (" + request.getRequestURI() + ") respondida a los " + msHastaPrimeraSolicitud + " ms desde el inicio de la JVM.");
+        }
+    }
+}
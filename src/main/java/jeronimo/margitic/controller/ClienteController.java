@@ -1,21 +1,29 @@
 package jeronimo.margitic.controller;
 
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
-import com.github.andrewoma.dexx.collection.Map;
-
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import io.swagger.annotations.ApiResponse;
 import io.swagger.annotations.ApiResponses;
+import jeronimo.margitic.config.CacheIdempotencia;
+import jeronimo.margitic.config.SnapshotJson;
+import jeronimo.margitic.exception.DniExistenteException;
 import jeronimo.margitic.model.Cliente;
 import jeronimo.margitic.service.ClienteService;
+import jeronimo.margitic.service.SnapshotsTodos;
+import jeronimo.margitic.util.Dinero;
 
 import org.springframework.web.bind.annotation.CrossOrigin;
 import org.springframework.web.bind.annotation.DeleteMapping;
@@ -23,9 +31,11 @@ import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.PutMapping;
 
 @RestController
+@Lazy(false)    //Se crea al iniciar aunque el perfil de produccion use inicializacion diferida.
 @RequestMapping("/api/clientes")
 @Api(value="ClienteRest", description = "Permite gestionar clientes por medio de comunicacion REST y protocolos HTTP.")
 @CrossOrigin(origins = {"http://localhost:3000","http://localhost:8080"})
@@ -34,6 +44,12 @@ public class ClienteController {
     @Autowired
     ClienteService clienteService;
 
+    @Autowired
+    CacheIdempotencia cacheIdempotencia;
+
+    @Autowired
+    SnapshotsTodos snapshotsTodos;
+
     @GetMapping("/{clienteId}")
     @ApiOperation(value = "Obtiene un cliente por id")
     @ApiResponses(value = {
@@ -52,11 +68,18 @@ public class ClienteController {
     @ApiOperation(value="Obtiene todos los clientes")
     @ApiResponses(value = {
         @ApiResponse(code = 200 , message = "Clientes obtenidos correctamente."),
+        @ApiResponse(code = 304 , message = "Sin cambios desde el ETag indicado."),
         @ApiResponse(code = 401 , message = "No autorizado."),
         @ApiResponse(code = 403 , message = "Prohibido"),
         @ApiResponse(code = 404 , message = "Recurso no encontrado.")
     })
-    public ResponseEntity<List<Cliente>> obtenerClienteTodos() {
+    public ResponseEntity<?> obtenerClienteTodos(@RequestHeader(name=HttpHeaders.IF_NONE_MATCH, required=false) String ifNoneMatch,
+                                                 @RequestHeader(name=HttpHeaders.ACCEPT_ENCODING, required=false) String acceptEncoding) {
+        //Si no hubo escrituras desde el ultimo snapshot se responde con los bytes ya serializados.
+        SnapshotJson.Snapshot snapshot = snapshotsTodos.clientes().vigente();
+        if (snapshot != null) {
+            return SnapshotJson.respuesta(snapshot, ifNoneMatch, acceptEncoding);
+        }
         List<Cliente> clientes = clienteService.obtenerTodos();
         return ResponseEntity.ok(clientes);
     }
@@ -80,15 +103,25 @@ public class ClienteController {
         @ApiResponse(code = 200 , message = "Cliente creado correctamente."),
         @ApiResponse(code = 401 , message = "No autorizado."),
         @ApiResponse(code = 403 , message = "Prohibido"),
-        @ApiResponse(code = 404 , message = "No se pudo crear el cliente (verificar datos)")
+        @ApiResponse(code = 404 , message = "No se pudo crear el cliente (verificar datos)"),
+        @ApiResponse(code = 409 , message = "Los datos chocan con un cliente ya guardado.")
     })
-    public ResponseEntity<Cliente> crearCliente (@RequestBody Cliente clienteNuevo) {
-        try{
-            Cliente clienteCreado = clienteService.crearCliente(clienteNuevo);
-            return ResponseEntity.status(201).body(clienteCreado);
-        }catch (Exception e){
-            return ResponseEntity.badRequest().build();
-        }
+    public ResponseEntity<Cliente> crearCliente (@RequestHeader(name=CacheIdempotencia.HEADER, required=false) String claveIdempotencia, @RequestBody Cliente clienteNuevo) {
+        //Con Idempotency-Key, un reintento recibe la respuesta de la primera ejecucion.
+        return cacheIdempotencia.ejecutar("clientes/crear", claveIdempotencia, clienteNuevo, () -> {
+            try{
+                Cliente clienteCreado = clienteService.crearCliente(clienteNuevo);
+                return ResponseEntity.status(201).body(clienteCreado);
+            }catch (IllegalArgumentException | DniExistenteException e){
+                return ResponseEntity.badRequest().build();
+            }catch (DataIntegrityViolationException e){
+                //Ej: el dni se guardo en otra solicitud entre la validacion y el insert.
+                return ResponseEntity.status(HttpStatus.CONFLICT).build();
+            }catch (Exception e){
+                //Error del servidor: no queda guardado para la clave, el reintento vuelve a ejecutar.
+                return ResponseEntity.internalServerError().build();
+            }
+        });
     }
 
     //Habria que ponerle que consume app/json tambien? Probar
@@ -133,15 +166,22 @@ public class ClienteController {
     }
 
     @PostMapping("/verificarSaldo/{id}")
-    public ResponseEntity<Boolean> verificarSaldoCliente(@PathVariable int id, @RequestBody Map<String, Object> totalOrden) {
-        Optional<Cliente> clienteBuscado = clienteService.obtenerClientePorId(id);
-        if (clienteBuscado.isPresent()) {
-            float total = Float.valueOf(totalOrden.get("total").toString());
-            boolean respuesta = clienteService.tieneSaldoParaOrden(clienteBuscado.get(), total);
-            return ResponseEntity.ok(respuesta);
-        } else {
-            return ResponseEntity.notFound().build();
-        }
+    public ResponseEntity<Boolean> verificarSaldoCliente(@RequestHeader(name=CacheIdempotencia.HEADER, required=false) String claveIdempotencia, @PathVariable int id, @RequestBody Map<String, Object> totalOrden) {
+        return cacheIdempotencia.ejecutar("clientes/verificarSaldo/" + id, claveIdempotencia, totalOrden, () -> {
+            Optional<Cliente> clienteBuscado = clienteService.obtenerClientePorId(id);
+            if (clienteBuscado.isPresent()) {
+                long total;
+                try {
+                    total = Dinero.aCentavos(totalOrden.get("total"));
+                } catch (IllegalArgumentException | ArithmeticException e) {
+                    return ResponseEntity.badRequest().build();
+                }
+                boolean respuesta = clienteService.tieneSaldoParaOrden(clienteBuscado.get(), total);
+                return ResponseEntity.ok(respuesta);
+            } else {
+                return ResponseEntity.notFound().build();
+            }
+        });
     }
     
 
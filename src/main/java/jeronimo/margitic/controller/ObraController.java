@@ -3,7 +3,13 @@ package jeronimo.margitic.controller;
 import java.util.List;
 import java.util.Optional;
 
+import java.net.URI;
+
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.CrossOrigin;
 import org.springframework.web.bind.annotation.DeleteMapping;
@@ -12,6 +18,7 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
@@ -19,10 +26,20 @@ import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import io.swagger.annotations.ApiResponse;
 import io.swagger.annotations.ApiResponses;
+import jeronimo.margitic.config.CacheIdempotencia;
+import jeronimo.margitic.config.SnapshotJson;
+import jeronimo.margitic.exception.DniExistenteException;
+import jeronimo.margitic.exception.MaximoDescubiertoExcedidoException;
+import jeronimo.margitic.exception.MaximoObrasEnEjecucionException;
 import jeronimo.margitic.model.Obra;
+import jeronimo.margitic.model.ResultadoFinalizacion;
+import jeronimo.margitic.model.SolicitudObra;
+import jeronimo.margitic.service.IngresoObrasAsync;
 import jeronimo.margitic.service.ObraService;
+import jeronimo.margitic.service.SnapshotsTodos;
 
 @RestController
+@Lazy(false)
 @RequestMapping("/api/obras")
 @Api(value="ObraRest", description = "Permite gestionar obras con REST y HTTP.")
 @CrossOrigin(origins = {"http://localhost:3000","http://localhost:8080"})
@@ -31,6 +48,15 @@ public class ObraController {
     @Autowired
     ObraService obraService;
 
+    @Autowired
+    IngresoObrasAsync ingresoObrasAsync;
+
+    @Autowired
+    CacheIdempotencia cacheIdempotencia;
+
+    @Autowired
+    SnapshotsTodos snapshotsTodos;
+
     @GetMapping("/{obraId}")
     @ApiOperation(value = "Obtiene una obra por id")
     @ApiResponses(value = {
@@ -50,11 +76,17 @@ public class ObraController {
     @ApiOperation(value="Obtiene todas las obras")
     @ApiResponses(value = {
         @ApiResponse(code = 200 , message = "Obras obtenidas correctamente."),
+        @ApiResponse(code = 304 , message = "Sin cambios desde el ETag indicado."),
         @ApiResponse(code = 401 , message = "No autorizado."),
         @ApiResponse(code = 403 , message = "Prohibido"),
         @ApiResponse(code = 404 , message = "No se obtuvieron obras.")
     })
-    public ResponseEntity<List<Obra>> obtenerObrasTodas() {
+    public ResponseEntity<?> obtenerObrasTodas(@RequestHeader(name=HttpHeaders.IF_NONE_MATCH, required=false) String ifNoneMatch,
+                                               @RequestHeader(name=HttpHeaders.ACCEPT_ENCODING, required=false) String acceptEncoding) {
+        SnapshotJson.Snapshot snapshot = snapshotsTodos.obras().vigente();
+        if (snapshot != null) {
+            return SnapshotJson.respuesta(snapshot, ifNoneMatch, acceptEncoding);
+        }
         List<Obra> obras = obraService.obtenerTodas();
         return ResponseEntity.ok(obras);
     }
@@ -65,16 +97,77 @@ public class ObraController {
         @ApiResponse(code = 200 , message = "Obra creada correctamente."),
         @ApiResponse(code = 401 , message = "No autorizado."),
         @ApiResponse(code = 403 , message = "Prohibido"),
-        @ApiResponse(code = 404 , message = "No se pudo crear la obra (verificar datos)")
+        @ApiResponse(code = 404 , message = "No se pudo crear la obra (verificar datos)"),
+        @ApiResponse(code = 409 , message = "Los datos chocan con una obra ya guardada (ej: coordenadas repetidas).")
+    })
+    public ResponseEntity<Obra> crearObra (@RequestHeader(name=CacheIdempotencia.HEADER, required=false) String claveIdempotencia, @RequestBody Obra obraNueva) {
+        return cacheIdempotencia.ejecutar("obras/crear", claveIdempotencia, obraNueva, () -> {
+            Obra obraCreada;
+            try {
+                obraCreada = obraService.crearObra(obraNueva);
+                return ResponseEntity.status(201).body(obraCreada);
+            } catch (IllegalArgumentException | MaximoDescubiertoExcedidoException | MaximoObrasEnEjecucionException | DniExistenteException e) {
+                return ResponseEntity.badRequest().build();
+            } catch (DataIntegrityViolationException e) {
+                return ResponseEntity.status(HttpStatus.CONFLICT).build();
+            } catch (Exception e) {
+                //Error del servidor: no queda guardado para la clave, el reintento vuelve a ejecutar.
+                return ResponseEntity.internalServerError().build();
+            }
+        });
+    }
+
+    @PostMapping(path="/crear", consumes="application/json", params="async=true")
+    @ApiOperation(value="Encola una obra para crearla de forma asincronica")
+    @ApiResponses(value = {
+        @ApiResponse(code = 202 , message = "Obra aceptada, su estado se consulta en la URL del header Location."),
+        @ApiResponse(code = 401 , message = "No autorizado."),
+        @ApiResponse(code = 403 , message = "Prohibido"),
+        @ApiResponse(code = 429 , message = "Cola de ingreso llena, reintentar mas tarde."),
+        @ApiResponse(code = 503 , message = "El servicio se esta deteniendo, reintentar en otra instancia.")
+    })
+    public ResponseEntity<SolicitudObra> crearObraAsync (@RequestHeader(name=CacheIdempotencia.HEADER, required=false) String claveIdempotencia, @RequestBody Obra obraNueva) {
+        //Con Idempotency-Key un reintento recibe la misma solicitud en vez de encolar la obra otra vez.
+        return cacheIdempotencia.ejecutar("obras/crear-async", claveIdempotencia, obraNueva, () -> {
+            Optional<SolicitudObra> solicitud = ingresoObrasAsync.encolar(obraNueva);
+            if (solicitud.isEmpty() && !ingresoObrasAsync.estaAceptando()) {
+                return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header("Retry-After", "1").build();
+            }
+            if (solicitud.isEmpty()) {
+                return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).header("Retry-After", "1").build();
+            }
+            return ResponseEntity.accepted()
+                .location(URI.create("/api/obras/solicitudes/" + solicitud.get().getId()))
+                .body(solicitud.get());
+        });
+    }
+
+    @GetMapping("/solicitudes/{solicitudId}")
+    @ApiOperation(value="Obtiene el estado de una obra encolada")
+    @ApiResponses(value = {
+        @ApiResponse(code = 200 , message = "Estado obtenido correctamente."),
+        @ApiResponse(code = 401 , message = "No autorizado."),
+        @ApiResponse(code = 403 , message = "Prohibido"),
+        @ApiResponse(code = 404 , message = "El id no corresponde a ninguna solicitud (o ya expiro).")
+    })
+    public ResponseEntity<SolicitudObra> obtenerSolicitud (@PathVariable String solicitudId) {
+        return ResponseEntity.of(ingresoObrasAsync.obtenerSolicitud(solicitudId));
+    }
+
+    @PostMapping(path="/finalizar", consumes="application/json")
+    @ApiOperation(value="Finaliza un conjunto de obras")
+    @ApiResponses(value = {
+        @ApiResponse(code = 200 , message = "Finalizacion procesada, se retorna el resultado por obra."),
+        @ApiResponse(code = 400 , message = "La lista de ids no puede ser vacia ni contener nulos."),
+        @ApiResponse(code = 401 , message = "No autorizado."),
+        @ApiResponse(code = 403 , message = "Prohibido")
     })
-    public ResponseEntity<Obra> crearObra (@RequestBody Obra obraNueva) {
-        Obra obraCreada;
-        try {
-            obraCreada = obraService.crearObra(obraNueva);
-            return ResponseEntity.status(201).body(obraCreada);
-        } catch (Exception e) {
+    public ResponseEntity<List<ResultadoFinalizacion>> finalizarObras (@RequestBody List<Integer> ids) {
+        if (ids == null || ids.isEmpty() || ids.contains(null)) {
             return ResponseEntity.badRequest().build();
         }
+        List<ResultadoFinalizacion> resultados = obraService.finalizarObras(ids);
+        return ResponseEntity.ok(resultados);
     }
 
     @PutMapping("/{id}")
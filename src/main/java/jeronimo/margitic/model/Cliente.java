@@ -7,17 +7,28 @@ import jakarta.persistence.CascadeType;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.FetchType;
-import jakarta.persistence.GeneratedValue;
-import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
 import jakarta.persistence.OneToMany;
+import jakarta.persistence.PostLoad;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.PreUpdate;
 import jakarta.persistence.Table;
+import jakarta.persistence.Transient;
 import jakarta.persistence.UniqueConstraint;
 
+import org.springframework.data.domain.Persistable;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+
 import io.swagger.annotations.ApiModelProperty;
+import jeronimo.margitic.util.Dinero;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
@@ -30,10 +41,9 @@ import lombok.Setter;
 @NoArgsConstructor
 @Builder
 @Table(uniqueConstraints = {@UniqueConstraint(columnNames = {"dni", "numerotelefono", "correoElectronico"})})
-public class Cliente {
+public class Cliente implements Persistable<Integer> {
 
-    @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    @Id    //Lo asigna GeneradorIds, ya que define el shard del cliente.
     @Column(name="id_cliente")
     private int id;
     private String nombre;
@@ -48,10 +58,51 @@ public class Cliente {
     @Column(length = 10)
     private String numeroTelefono;
     private String correoElectronico;
-    private Float maximoDescubierto;    //Indica la cantidad maxima de dinero que puede quedar debiendo en la cuenta corriente.
+    @ApiModelProperty(notes="Ingresar el monto en pesos, se guarda en centavos")
+    @Column(name="maximo_descubierto_centavos")
+    @JsonSerialize(using = Dinero.Serializador.class)
+    @JsonDeserialize(using = Dinero.Deserializador.class)
+    private long maximoDescubierto;    //Indica la cantidad maxima de dinero (en centavos) que puede quedar debiendo en la cuenta corriente.
     private int obrasEnEjecucion;
     private int maximoObrasEnEjecucion; //Indica la cantidad maxima de obras que un
     @OneToMany(mappedBy = "cliente", cascade = CascadeType.ALL, fetch = FetchType.LAZY)
     private List<UsuarioHabilitado> usuariosHabilitados;    //Son los usuarios que estan habilitados a operar en nombre del cliente
 
+    //Momento de la ultima escritura de la fila (System.currentTimeMillis()). SnapshotsTodos suma esta columna por shard
+    //para detectar cambios hechos por otras replicas sin llevar un contador compartido.
+    @JsonIgnore
+    @EqualsAndHashCode.Exclude
+    @Column(name="actualizado_en")
+    private long actualizadoEn;
+
+    //El id se asigna antes de guardar, por lo que Spring Data no puede deducir si la entidad es nueva.
+    //Lo marcan ClienteService/ObraService al crearla, asi save() hace persist (un INSERT) en vez de merge (SELECT + INSERT).
+    @Transient
+    @JsonIgnore
+    @EqualsAndHashCode.Exclude
+    private boolean nuevo;
+
+    @Override
+    public Integer getId() {
+        return id;
+    }
+
+    @Override
+    @JsonIgnore
+    public boolean isNew() {
+        return nuevo;
+    }
+
+    @PostPersist
+    @PostLoad
+    void marcarGuardada() {
+        nuevo = false;
+    }
+
+    @PrePersist
+    @PreUpdate
+    void marcarEscritura() {
+        actualizadoEn = System.currentTimeMillis();
+    }
+
 }
@@ -0,0 +1,19 @@
+package jeronimo.margitic.model;
+
+//Resultado de cada obra en una finalizacion masiva (POST /api/obras/finalizar).
+public enum EstadoFinalizacion {
+    /* la obra paso a FINALIZADA en esta solicitud */
+    FINALIZADA,
+
+    /* la obra ya estaba finalizada, no se modifico */
+    YA_FINALIZADA,
+
+    /* el id no corresponde a ninguna obra */
+    NO_ENCONTRADA,
+
+    /* el id ya aparecia antes en la misma solicitud; se informa el resultado en su primera aparicion */
+    DUPLICADA,
+
+    /* fallo la transaccion del lote que contenia la obra, no se modifico */
+    ERROR
+}
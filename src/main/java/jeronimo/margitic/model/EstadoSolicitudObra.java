@@ -0,0 +1,13 @@
+package jeronimo.margitic.model;
+
+//Estado de una obra recibida por el ingreso asincronico.
+public enum EstadoSolicitudObra {
+    /* la obra esta esperando a ser guardada */
+    EN_COLA,
+
+    /* la obra se guardo, su id esta en idObra */
+    CREADA,
+
+    /* la obra no paso las validaciones o fallo al guardarse, el motivo esta en mensaje */
+    RECHAZADA
+}
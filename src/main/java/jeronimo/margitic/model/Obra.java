@@ -3,17 +3,28 @@ package jeronimo.margitic.model;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.FetchType;
-import jakarta.persistence.GenerationType;
-import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.Id;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
+import jakarta.persistence.PostLoad;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.PreUpdate;
 import jakarta.persistence.Table;
+import jakarta.persistence.Transient;
 import jakarta.persistence.UniqueConstraint;
 
+import org.springframework.data.domain.Persistable;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+
+import jeronimo.margitic.util.Dinero;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
@@ -26,10 +37,9 @@ import lombok.Setter;
 @NoArgsConstructor
 @Builder
 @Table(uniqueConstraints = {@UniqueConstraint(columnNames = {"coordenadas"})})
-public class Obra {
+public class Obra implements Persistable<Integer> {
 
-    @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    @Id    //Lo asigna GeneradorIds (unico entre shards).
     @Column(name="id_obra")
     private int id;
     private String direccion;
@@ -37,7 +47,45 @@ public class Obra {
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "id_cliente")
     private Cliente cliente;
-    private Float presupuestoEstimado;
+    @Column(name="presupuesto_estimado_centavos")
+    @JsonSerialize(using = Dinero.Serializador.class)
+    @JsonDeserialize(using = Dinero.Deserializador.class)
+    private long presupuestoEstimado;    // En centavos
     private EstadoObra estadoObra;
 
+    //Igual que en Cliente: momento de la ultima escritura, para los snapshots de SnapshotsTodos.
+    @JsonIgnore
+    @EqualsAndHashCode.Exclude
+    @Column(name="actualizado_en")
+    private long actualizadoEn;
+
+    //Igual que en Cliente: lo marca ObraService al crear la obra para que save() haga persist.
+    @Transient
+    @JsonIgnore
+    @EqualsAndHashCode.Exclude
+    private boolean nuevo;
+
+    @Override
+    public Integer getId() {
+        return id;
+    }
+
+    @Override
+    @JsonIgnore
+    public boolean isNew() {
+        return nuevo;
+    }
+
+    @PostPersist
+    @PostLoad
+    void marcarGuardada() {
+        nuevo = false;
+    }
+
+    @PrePersist
+    @PreUpdate
+    void marcarEscritura() {
+        actualizadoEn = System.currentTimeMillis();
+    }
+
 }
@@ -0,0 +1,17 @@
+package jeronimo.margitic.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+//Resultado de finalizar una obra dentro de una finalizacion masiva.
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ResultadoFinalizacion {
+
+    private int idObra;
+    private EstadoFinalizacion resultado;
+    private String mensaje;
+
+}
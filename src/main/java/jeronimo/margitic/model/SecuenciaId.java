@@ -0,0 +1,22 @@
+package jeronimo.margitic.model;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+//Proximo id a asignar para una entidad (ej: "cliente", "obra").
+//Vive en el shard 0 y garantiza ids unicos entre todos los shards.
+@Data
+@Entity
+@AllArgsConstructor
+@NoArgsConstructor
+public class SecuenciaId {
+
+    @Id
+    private String nombre;
+    private long siguiente;
+
+}
@@ -0,0 +1,28 @@
+package jeronimo.margitic.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+//Estado de una obra recibida por el ingreso asincronico (POST /api/obras/crear?async=true).
+@Data
+@NoArgsConstructor
+public class SolicitudObra {
+
+    private String id;
+    private volatile EstadoSolicitudObra estado;    //Se escribe al final, luego de idObra y mensaje.
+    private Integer idObra;
+    private String mensaje;
+    @JsonIgnore
+    private Obra obra;
+    @JsonIgnore
+    private volatile long finalizadaEn;    //System.currentTimeMillis() al terminar, 0 mientras esta en cola.
+
+    public SolicitudObra(String id, Obra obra) {
+        this.id = id;
+        this.obra = obra;
+        this.estado = EstadoSolicitudObra.EN_COLA;
+    }
+
+}
@@ -8,11 +8,17 @@ import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.PreUpdate;
 import jakarta.persistence.Table;
 import jakarta.persistence.UniqueConstraint;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
@@ -38,5 +44,17 @@ public class UsuarioHabilitado {
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "id_cliente")
     private Cliente cliente;
-    
+
+    //Igual que en Cliente: los usuarios forman parte del listado de clientes.
+    @JsonIgnore
+    @EqualsAndHashCode.Exclude
+    @Column(name="actualizado_en")
+    private long actualizadoEn;
+
+    @PrePersist
+    @PreUpdate
+    void marcarEscritura() {
+        actualizadoEn = System.currentTimeMillis();
+    }
+
 }
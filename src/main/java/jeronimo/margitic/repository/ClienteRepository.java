@@ -2,17 +2,42 @@ package jeronimo.margitic.repository;
 
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
 import java.util.Optional;
 
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 
 import jeronimo.margitic.model.Cliente;
 
 @Repository
 public interface ClienteRepository extends JpaRepository<Cliente, Integer>{
 
+    //Con open-in-view deshabilitado las entidades se serializan fuera de la transaccion,
+    //por eso los usuarios habilitados se cargan en la misma consulta.
+    @EntityGraph(attributePaths = "usuariosHabilitados")
     Optional<Cliente> findById(int id);
     
+    @EntityGraph(attributePaths = "usuariosHabilitados")
     Optional<Cliente> findByDni(long dni);
 
+    @Override
+    @EntityGraph(attributePaths = "usuariosHabilitados")
+    List<Cliente> findAll();
+
+    @Query("select coalesce(max(c.id), 0) from Cliente c")
+    int findMaximoId();
+
+    //Retorna [id, obrasEnEjecucion, maximoObrasEnEjecucion, maximoDescubierto] de cada cliente, sin cargar las entidades.
+    @Query("select c.id, c.obrasEnEjecucion, c.maximoObrasEnEjecucion, c.maximoDescubierto from Cliente c")
+    List<Object[]> findEstadoCredito();
+
+    //Retorna [cantidad, suma de actualizadoEn] de clientes y de usuarios habilitados: cambia con cualquier alta, baja o modificacion.
+    @Query("select count(c), coalesce(sum(c.actualizadoEn), 0) from Cliente c")
+    List<Object[]> findResumenEscrituras();
+
+    @Query("select count(u), coalesce(sum(u.actualizadoEn), 0) from UsuarioHabilitado u")
+    List<Object[]> findResumenEscriturasUsuarios();
+
 }
@@ -1,14 +1,44 @@
 package jeronimo.margitic.repository;
 
 import org.springframework.stereotype.Repository;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import jeronimo.margitic.model.EstadoObra;
 import jeronimo.margitic.model.Obra;
+
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 
 @Repository
 public interface ObraRepository extends JpaRepository<Obra, Integer>{
 
+    //El cliente se carga en la misma consulta, ya que la obra se serializa fuera de la transaccion (ver ClienteRepository).
+    @EntityGraph(attributePaths = {"cliente", "cliente.usuariosHabilitados"})
     Optional<Obra> findById(int id);
+
+    @Override
+    @EntityGraph(attributePaths = {"cliente", "cliente.usuariosHabilitados"})
+    List<Obra> findAll();
+
+    List<Obra> findByClienteId(int clienteId);
+
+    //Obras de un cliente en un estado dado, en orden de alta.
+    List<Obra> findByClienteIdAndEstadoObraOrderByIdAsc(int clienteId, EstadoObra estadoObra);
+
+    //Retorna pares [id_obra, id_cliente] para agrupar obras por cliente sin cargar las entidades.
+    @Query("select o.id, c.id from Obra o left join o.cliente c where o.id in :ids")
+    List<Object[]> findClientePorObra(@Param("ids") Collection<Integer> ids);
+
+    @Query("select coalesce(max(o.id), 0) from Obra o")
+    int findMaximoId();
+
+    //Retorna [cantidad, suma de actualizadoEn] (ver ClienteRepository.findResumenEscrituras).
+    @Query("select count(o), coalesce(sum(o.actualizadoEn), 0) from Obra o")
+    List<Object[]> findResumenEscrituras();
     
 }
@@ -0,0 +1,28 @@
+package jeronimo.margitic.repository;
+
+import java.util.Optional;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import jakarta.persistence.LockModeType;
+import jeronimo.margitic.model.SecuenciaId;
+
+@Repository
+public interface SecuenciaIdRepository extends JpaRepository<SecuenciaId, String>{
+
+    //Bloquea la fila para que dos replicas no reserven el mismo bloque de ids.
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select s from SecuenciaId s where s.nombre = :nombre")
+    Optional<SecuenciaId> buscarParaActualizar(@Param("nombre") String nombre);
+
+    //INSERT sin merge: si otra replica creo la fila primero falla por clave duplicada en vez de pisarla.
+    @Modifying
+    @Query(value = "insert into secuencia_id (nombre, siguiente) values (:nombre, :siguiente)", nativeQuery = true)
+    void crear(@Param("nombre") String nombre, @Param("siguiente") long siguiente);
+
+}
@@ -2,21 +2,27 @@ package jeronimo.margitic.service;
 
 import java.time.LocalDate;
 import java.time.Period;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Optional;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
-import org.springframework.http.ResponseEntity;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
 import org.springframework.stereotype.Service;
 
-import com.github.andrewoma.dexx.collection.Map;
-
 import jeronimo.margitic.config.RestTemplateClient;
 import jeronimo.margitic.exception.*;
 import jeronimo.margitic.model.Cliente;
 import jeronimo.margitic.repository.ClienteRepository;
+import jeronimo.margitic.util.Dinero;
 
 @Service
 public class ClienteService {
@@ -26,27 +32,40 @@ public class ClienteService {
 
     @Autowired
     private RestTemplateClient restTemplate;
+
+    @Autowired
+    ShardRouter shardRouter;
+
+    @Autowired
+    GeneradorIds generadorIds;
+
+    @Autowired
+    EstadoCreditoClientes estadoCreditoClientes;
+
+    @Autowired
+    SnapshotsTodos snapshotsTodos;
     
     private final String url_pedidos = "http:///pedido-service:8080/api/pedidos";
 
     //Obtiene un cliente acorde a un id.
     public Optional<Cliente> obtenerClientePorId(int id){
-        return clienteRepository.findById(id);
+        return shardRouter.enShardDeCliente(id, () -> clienteRepository.findById(id));
     }
 
     //Obtiene un cliente acorde a un dni.
     public Optional<Cliente> obtenerClientePorDni(long dni){
-        return clienteRepository.findByDni(dni);
+        //El dni no define el shard, se busca en todos.
+        return shardRouter.buscarEnTodos(() -> clienteRepository.findByDni(dni));
     }
 
     //Obtiene todos los clientes.
     public List<Cliente> obtenerTodos(){
-        return clienteRepository.findAll();
+        return shardRouter.concatenarTodos(() -> clienteRepository.findAll());
     }
 
     //Obtiene todos los clientes pero retorna una pagina.
     public Page<Cliente> obtenerTodosPagina(){
-        Page<Cliente> paginasCliente = clienteRepository.findAll(PageRequest.of(1,5));
+        Page<Cliente> paginasCliente = obtenerPagina(PageRequest.of(1,5));
         /* Opcionalmente, se puede pasar a DTO
         if(paginasCliente.hasContent()){
             List<ClienteDTO> lista = paginasCliente.stream().map(m->new ClienteDTO()).collect(Collectors.toList());
@@ -55,18 +74,45 @@ public class ClienteService {
         return paginasCliente;
     }
 
+    //Arma una pagina con los clientes de todos los shards.
+    //Cada shard aporta sus primeras filas ordenadas por id y la pagina se corta sobre la union.
+    private Page<Cliente> obtenerPagina(Pageable pagina) {
+        if (shardRouter.cantidadShards() == 1) {
+            return clienteRepository.findAll(pagina);
+        }
+        int cantidad = (int) pagina.getOffset() + pagina.getPageSize();
+        Pageable prefijo = PageRequest.of(0, cantidad, Sort.by("id"));
+        List<Cliente> clientes = new ArrayList<>();
+        long total = 0;
+        for (Page<Cliente> pagShard : shardRouter.enTodos(() -> clienteRepository.findAll(prefijo))) {
+            clientes.addAll(pagShard.getContent());
+            total += pagShard.getTotalElements();
+        }
+        clientes.sort(Comparator.comparingInt(Cliente::getId));
+        int desde = (int) Math.min(pagina.getOffset(), clientes.size());
+        int hasta = Math.min(cantidad, clientes.size());
+        return new PageImpl<>(clientes.subList(desde, hasta), pagina, total);
+    }
+
     //Crea un cliente.
     public Cliente crearCliente(Cliente cliente) throws Exception{
         //Primero, validar los datos del cliente.
         validarCliente(cliente);
+        //Se asigna el id, que define el shard donde se guarda el cliente.
+        cliente.setId(generadorIds.siguienteId("cliente", () -> shardRouter.maximoEnTodos(clienteRepository::findMaximoId)));
+        cliente.setNuevo(true);
         //Guardar en BD.
-        Cliente clienteNuevo = clienteRepository.save(cliente);
+        Cliente clienteNuevo = shardRouter.enShardDeCliente(cliente.getId(), () -> clienteRepository.save(cliente));
+        estadoCreditoClientes.actualizarAlConfirmar(clienteNuevo);
+        snapshotsTodos.invalidarClientes();
         return clienteNuevo;
     }
 
     //Elimina un cliente segun un id.
     public void eliminarCliente(int id){
-        clienteRepository.deleteById(id);
+        shardRouter.enShardDeCliente(id, () -> clienteRepository.deleteById(id));
+        estadoCreditoClientes.eliminar(id);
+        snapshotsTodos.invalidarClientes();
     }
 
     //Actualiza un cliente.    
@@ -74,7 +120,9 @@ public class ClienteService {
         //Primero se validan los datos.
         validarCliente(cliente);
         //Guardar en BD.
-        Cliente clienteActualizado = clienteRepository.save(cliente);
+        Cliente clienteActualizado = shardRouter.enShardDeCliente(cliente.getId(), () -> clienteRepository.save(cliente));
+        estadoCreditoClientes.actualizarAlConfirmar(clienteActualizado);
+        snapshotsTodos.invalidarClientes();
         return clienteActualizado;
     }
 
@@ -138,7 +186,8 @@ public class ClienteService {
 
     //Actualiza el maximo descubierto de un cliente segun el presupuesto estimado de la obra.
     //Puede no usarse ya que el maximo descubierto cambia con un pedido.
-    public Float actualizarMaximoDescubierto(Cliente cliente, Float presupuestoEstimado) {
+    //Solo cambia la entidad; quien la guarda actualiza EstadoCreditoClientes al confirmar (ver ObraService.finalizarObras).
+    public long actualizarMaximoDescubierto(Cliente cliente, long presupuestoEstimado) {
         cliente.setMaximoDescubierto(cliente.getMaximoDescubierto() - presupuestoEstimado);
         return cliente.getMaximoDescubierto();
     }
@@ -151,39 +200,30 @@ public class ClienteService {
     }
 
     //Verifica que el cliente tenga saldo para un Pedido.
-    public boolean tieneSaldoParaOrden(Cliente cliente, float totalOrden){
+    //Los montos se manejan en centavos (ver Dinero).
+    public boolean tieneSaldoParaOrden(Cliente cliente, long totalOrden){
         //Un cliente tiene saldo disponible si el monto de todos los pedidos que no fueron entregados o rechazados-
         //-mas el monto del pedido actual, no superan el maximo descubierto del cliente.
 
-        //Obtener todos los pedidos asociados al cliente
-        ResponseEntity<List<Map<String, Object>>> respuesta = consultaRESTPedidosCliente(cliente.getId());
-        List<Map<String, Object>> ordenes = respuesta.getBody();
-
-        float total = 0;
-
-        if(ordenes != null){
-            for (Map<String, Object> orden: ordenes){
-                //Se suman todos los valores de la orden al total.
-                Float aux = Float.valueOf(orden.get("total").toString());
-                total += aux;
-            }
-        }
+        //Obtener la suma de los pedidos asociados al cliente
+        long total = consultaRESTSaldoPedidosCliente(cliente.getId());
         total += totalOrden;
         
         return (cliente.getMaximoDescubierto() >= total);
     }
 
-    //Consulta via endpoint REST todos los pedidos de un cliente.
-    private ResponseEntity<List<Map<String, Object>>> consultaRESTPedidosCliente(int id_cliente){
+    //Consulta via endpoint REST todos los pedidos de un cliente y retorna la suma de sus totales (en centavos).
+    //La respuesta se procesa a medida que llega, sin deserializar la lista de pedidos.
+    private long consultaRESTSaldoPedidosCliente(int id_cliente){
         
         String url = url_pedidos + "/cliente/" + String.valueOf(id_cliente);
 
-        ResponseEntity<List<Map<String, Object>>> respuesta = restTemplate.exchange(
+        Long total = restTemplate.execute(
             url,
-            org.springframework.http.HttpMethod.GET,
-            null,
-            new org.springframework.core.ParameterizedTypeReference<List<Map<String, Object>>>() {}
+            HttpMethod.GET,
+            request -> request.getHeaders().set(HttpHeaders.ACCEPT, MediaType.APPLICATION_JSON_VALUE),
+            new SaldoPedidosExtractor()
         );
-        return respuesta;
+        return total != null ? total : 0;
     }
 }
@@ -0,0 +1,305 @@
+package jeronimo.margitic.service;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import jakarta.annotation.PreDestroy;
+import jeronimo.margitic.model.Cliente;
+import jeronimo.margitic.repository.ClienteRepository;
+
+//Tabla en memoria con el estado crediticio de cada cliente: obras en ejecucion, maximo de obras y maximo descubierto.
+//Son los unicos datos que necesitan las verificaciones de una obra, asi que se evita cargar la entidad Cliente.
+//Se guarda en arreglos primitivos paralelos con direccionamiento abierto (sondeo lineal) por id de cliente,
+//por lo que las consultas no generan objetos.
+//Se carga al iniciar y se actualiza cuando se confirma un cambio del cliente (ver actualizarAlConfirmar),
+//asi que las consultas nunca van a la BD. Los cambios de otras replicas se toman al recargar la tabla
+//cada estado-credito.recarga-ms; la verificacion final al guardar usa la entidad (ver ObraService).
+@Component
+public class EstadoCreditoClientes {
+
+    //Los ids de cliente arrancan en 1, el 0 marca una posicion libre.
+    private static final int LIBRE = 0;
+    private static final int CAPACIDAD_INICIAL = 1024;
+
+    @Autowired
+    ClienteRepository clienteRepository;
+
+    @Autowired
+    ShardRouter shardRouter;
+
+    //Cada cuanto se recarga la tabla completa para tomar los cambios de otras replicas (0 para no recargar).
+    @Value("${estado-credito.recarga-ms:60000}")
+    private long recargaMs;
+
+    private int[] ids;
+    private int[] obrasEnEjecucion;
+    private int[] maximoObrasEnEjecucion;
+    private long[] maximoDescubierto;
+    private int cantidad;
+
+    //Ids actualizados o eliminados mientras se leia la BD en cargar(); null si no hay una carga en curso.
+    private Set<Integer> cambiadosDuranteCarga;
+    private final Object cargaEnCurso = new Object();
+    private ScheduledExecutorService recargas;
+
+    public EstadoCreditoClientes() {
+        inicializar(CAPACIDAD_INICIAL);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void iniciar() {
+        cargar();
+        if (recargaMs > 0) {
+            recargas = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread hilo = new Thread(r, "estado-credito-recarga");
+                hilo.setDaemon(true);
+                return hilo;
+            });
+            recargas.scheduleWithFixedDelay(this::recargar, recargaMs, recargaMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void detener() {
+        if (recargas != null) {
+            recargas.shutdownNow();
+        }
+    }
+
+    private void recargar() {
+        try {
+            cargar();
+        } catch (RuntimeException e) {
+            //Se sigue con la tabla actual y se reintenta en la proxima recarga.
+            System.err.println("Error: " + e.getMessage());
+        }
+    }
+
+    //Carga la tabla con el estado de todos los clientes de la BD.
+    //La lectura se hace sin tomar el lock de la tabla; los clientes que se actualizan o eliminan mientras tanto
+    //conservan el valor de la tabla, que es al menos tan nuevo como el leido.
+    public void cargar() {
+        synchronized (cargaEnCurso) {
+            synchronized (this) {
+                cambiadosDuranteCarga = new HashSet<>();
+            }
+            List<Object[]> filas;
+            try {
+                filas = shardRouter.concatenarTodos(() -> clienteRepository.findEstadoCredito());
+            } catch (RuntimeException e) {
+                synchronized (this) {
+                    cambiadosDuranteCarga = null;
+                }
+                throw e;
+            }
+            synchronized (this) {
+                int[] idsViejos = ids;
+                int[] obrasViejas = obrasEnEjecucion;
+                int[] maximosViejos = maximoObrasEnEjecucion;
+                long[] descubiertosViejos = maximoDescubierto;
+                int capacidad = CAPACIDAD_INICIAL;
+                while (capacidad < filas.size() * 2) {
+                    capacidad <<= 1;
+                }
+                inicializar(capacidad);
+                for (Object[] fila : filas) {
+                    int id = (Integer) fila[0];
+                    if (!cambiadosDuranteCarga.contains(id)) {
+                        guardar(id, (Integer) fila[1], (Integer) fila[2], (Long) fila[3]);
+                    }
+                }
+                for (int i = 0; i < idsViejos.length; i++) {
+                    if (idsViejos[i] != LIBRE && cambiadosDuranteCarga.contains(idsViejos[i])) {
+                        guardar(idsViejos[i], obrasViejas[i], maximosViejos[i], descubiertosViejos[i]);
+                    }
+                }
+                cambiadosDuranteCarga = null;
+            }
+        }
+    }
+
+    public void actualizar(Cliente cliente) {
+        actualizar(cliente.getId(), cliente.getObrasEnEjecucion(), cliente.getMaximoObrasEnEjecucion(), cliente.getMaximoDescubierto());
+    }
+
+    //Actualiza la tabla recien cuando se confirma la transaccion actual, asi un rollback no deja valores que no estan en la BD.
+    //Sin transaccion activa el cambio ya esta guardado y se actualiza en el momento.
+    public void actualizarAlConfirmar(Cliente cliente) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            actualizar(cliente);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                actualizar(cliente);
+            }
+        });
+    }
+
+    public synchronized void actualizar(int id, int obras, int maximoObras, long descubierto) {
+        if (cambiadosDuranteCarga != null) {
+            cambiadosDuranteCarga.add(id);
+        }
+        guardar(id, obras, maximoObras, descubierto);
+    }
+
+    private void guardar(int id, int obras, int maximoObras, long descubierto) {
+        if ((cantidad + 1) * 2 > ids.length) {
+            redimensionar(ids.length << 1);
+        }
+        int i = posicion(id);
+        if (ids[i] == LIBRE) {
+            ids[i] = id;
+            cantidad++;
+        }
+        obrasEnEjecucion[i] = obras;
+        maximoObrasEnEjecucion[i] = maximoObras;
+        maximoDescubierto[i] = descubierto;
+    }
+
+    public synchronized void eliminar(int id) {
+        if (cambiadosDuranteCarga != null) {
+            cambiadosDuranteCarga.add(id);
+        }
+        int i = posicion(id);
+        if (ids[i] == LIBRE) {
+            return;
+        }
+        //Se corren hacia atras los elementos siguientes del mismo grupo para no cortar la secuencia de sondeo.
+        int mascara = ids.length - 1;
+        int j = i;
+        while (true) {
+            j = (j + 1) & mascara;
+            if (ids[j] == LIBRE) {
+                break;
+            }
+            int ideal = hash(ids[j]) & mascara;
+            boolean puedeMoverse = (i <= j) ? (ideal <= i || ideal > j) : (ideal <= i && ideal > j);
+            if (puedeMoverse) {
+                copiar(j, i);
+                i = j;
+            }
+        }
+        ids[i] = LIBRE;
+        cantidad--;
+    }
+
+    public synchronized boolean contiene(int id) {
+        return ids[posicion(id)] != LIBRE;
+    }
+
+    //Indica si el cliente ya tiene el maximo de obras en ejecucion permitidas.
+    public synchronized boolean alcanzoMaximoObras(int id) {
+        int i = posicion(id);
+        return obrasEnEjecucion[i] + 1 > maximoObrasEnEjecucion[i];
+    }
+
+    public synchronized long maximoDescubierto(int id) {
+        return maximoDescubierto[posicion(id)];
+    }
+
+    //Variantes que buscan y leen el cliente con un solo lock (un eliminar en el medio podria liberar la posicion).
+    //Si el cliente no esta en la tabla retornan siNoEsta, que el llamador toma de la entidad.
+    public synchronized boolean alcanzoMaximoObras(int id, boolean siNoEsta) {
+        int i = posicion(id);
+        return ids[i] == LIBRE ? siNoEsta : obrasEnEjecucion[i] + 1 > maximoObrasEnEjecucion[i];
+    }
+
+    public synchronized long maximoDescubierto(int id, long siNoEsta) {
+        int i = posicion(id);
+        return ids[i] == LIBRE ? siNoEsta : maximoDescubierto[i];
+    }
+
+    public synchronized int cantidad() {
+        return cantidad;
+    }
+
+    //Compara la tabla con la BD y retorna los ids de los clientes cuyo estado no coincide
+    //(incluye clientes que faltan en la tabla y clientes que ya no estan en la BD).
+    public List<Integer> verificarConsistencia() {
+        List<Object[]> filas = shardRouter.concatenarTodos(() -> clienteRepository.findEstadoCredito());
+        List<Integer> diferencias = new ArrayList<>();
+        Set<Integer> idsEnBD = new HashSet<>();
+        synchronized (this) {
+            for (Object[] fila : filas) {
+                int id = (Integer) fila[0];
+                idsEnBD.add(id);
+                int i = posicion(id);
+                if (ids[i] == LIBRE
+                        || obrasEnEjecucion[i] != (Integer) fila[1]
+                        || maximoObrasEnEjecucion[i] != (Integer) fila[2]
+                        || maximoDescubierto[i] != (Long) fila[3]) {
+                    diferencias.add(id);
+                }
+            }
+            for (int id : ids) {
+                if (id != LIBRE && !idsEnBD.contains(id)) {
+                    diferencias.add(id);
+                }
+            }
+        }
+        return diferencias;
+    }
+
+    //Posicion del id en la tabla, o la posicion libre donde deberia insertarse.
+    private int posicion(int id) {
+        int mascara = ids.length - 1;
+        int i = hash(id) & mascara;
+        while (ids[i] != LIBRE && ids[i] != id) {
+            i = (i + 1) & mascara;
+        }
+        return i;
+    }
+
+    private static int hash(int id) {
+        int h = id * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private void copiar(int desde, int hasta) {
+        ids[hasta] = ids[desde];
+        obrasEnEjecucion[hasta] = obrasEnEjecucion[desde];
+        maximoObrasEnEjecucion[hasta] = maximoObrasEnEjecucion[desde];
+        maximoDescubierto[hasta] = maximoDescubierto[desde];
+    }
+
+    private void inicializar(int capacidad) {
+        ids = new int[capacidad];
+        obrasEnEjecucion = new int[capacidad];
+        maximoObrasEnEjecucion = new int[capacidad];
+        maximoDescubierto = new long[capacidad];
+        cantidad = 0;
+    }
+
+    private void redimensionar(int capacidad) {
+        int[] idsViejos = ids;
+        int[] obrasViejas = obrasEnEjecucion;
+        int[] maximosViejos = maximoObrasEnEjecucion;
+        long[] descubiertosViejos = maximoDescubierto;
+        inicializar(capacidad);
+        for (int i = 0; i < idsViejos.length; i++) {
+            if (idsViejos[i] != LIBRE) {
+                int j = posicion(idsViejos[i]);
+                ids[j] = idsViejos[i];
+                obrasEnEjecucion[j] = obrasViejas[i];
+                maximoObrasEnEjecucion[j] = maximosViejos[i];
+                maximoDescubierto[j] = descubiertosViejos[i];
+                cantidad++;
+            }
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package jeronimo.margitic.service;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import jeronimo.margitic.repository.SecuenciaIdRepository;
+
+//Asigna ids unicos entre todos los shards.
+//El id de un cliente define su shard, por lo que tiene que conocerse antes de guardarlo.
+//Los ids se reservan de a bloques en la tabla SecuenciaId del shard 0.
+@Service
+public class GeneradorIds {
+
+    private static final int TAMANIO_BLOQUE = 50;
+
+    @Autowired
+    SecuenciaIdRepository secuenciaIdRepository;
+
+    @Autowired
+    TransactionTemplate transactionTemplate;
+
+    @Autowired
+    ShardRouter shardRouter;
+
+    //Por cada secuencia: [proximo id, limite del bloque reservado (exclusivo)].
+    private final Map<String, long[]> bloques = new HashMap<>();
+
+    //Retorna el proximo id de la secuencia.
+    //maximoActual se usa solo la primera vez, para continuar despues de los ids ya existentes.
+    public synchronized int siguienteId(String nombre, Supplier<Integer> maximoActual) {
+        long[] bloque = bloques.get(nombre);
+        if (bloque == null || bloque[0] >= bloque[1]) {
+            bloque = reservarBloque(nombre, maximoActual);
+            bloques.put(nombre, bloque);
+        }
+        return Math.toIntExact(bloque[0]++);
+    }
+
+    //Reserva el proximo bloque con la fila de la secuencia bloqueada.
+    //Si la fila todavia no existe se crea y se vuelve a intentar la reserva.
+    private long[] reservarBloque(String nombre, Supplier<Integer> maximoActual) {
+        while (true) {
+            long[] bloque = shardRouter.enShard(0, () -> transactionTemplate.execute(status ->
+                secuenciaIdRepository.buscarParaActualizar(nombre).map(secuencia -> {
+                    long inicio = secuencia.getSiguiente();
+                    secuencia.setSiguiente(inicio + TAMANIO_BLOQUE);
+                    return new long[]{inicio, inicio + TAMANIO_BLOQUE};
+                }).orElse(null)));
+            if (bloque != null) {
+                return bloque;
+            }
+            crearSecuencia(nombre, maximoActual.get() + 1L);
+        }
+    }
+
+    private void crearSecuencia(String nombre, long siguiente) {
+        try {
+            shardRouter.enShard(0, () -> transactionTemplate.executeWithoutResult(status -> secuenciaIdRepository.crear(nombre, siguiente)));
+        } catch (DataIntegrityViolationException e) {
+            //Otra replica creo la fila al mismo tiempo; se reserva sobre la suya.
+        }
+    }
+}
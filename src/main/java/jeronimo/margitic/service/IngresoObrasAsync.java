@@ -0,0 +1,258 @@
+package jeronimo.margitic.service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jeronimo.margitic.model.EstadoSolicitudObra;
+import jeronimo.margitic.model.Obra;
+import jeronimo.margitic.model.SolicitudObra;
+
+//Ingreso asincronico de obras.
+//Las obras se encolan en una cola acotada y un grupo de hilos las valida y las guarda de a lotes,
+//con una transaccion por shard por lote (group commit). Si la cola esta llena la obra no se acepta.
+//Al detenerse deja de aceptar obras y termina de guardar las encoladas durante una espera acotada.
+@Service
+public class IngresoObrasAsync {
+
+    //Tiempo que se conserva el estado de una solicitud terminada.
+    private static final long RETENCION_MS = TimeUnit.MINUTES.toMillis(10);
+    private static final long INTERVALO_PURGA_MS = TimeUnit.SECONDS.toMillis(30);
+
+    @Autowired
+    ObraService obraService;
+
+    @Autowired
+    ShardRouter shardRouter;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @Value("${obras.ingreso-async.capacidad:1000}")
+    private int capacidad;
+
+    @Value("${obras.ingreso-async.hilos:2}")
+    private int hilos;
+
+    @Value("${obras.ingreso-async.tamanio-lote:100}")
+    private int tamanioLote;
+
+    //Cantidad maxima de solicitudes que se conservan; al superarla se descartan las terminadas mas viejas
+    //aunque no haya pasado RETENCION_MS. Las que estan en cola no se descartan (las acota la capacidad de la cola).
+    @Value("${obras.ingreso-async.maximo-solicitudes:10000}")
+    private int maximoSolicitudes;
+
+    //Espera maxima al detener el servicio para guardar las obras que ya estaban en cola.
+    @Value("${obras.ingreso-async.espera-cierre-segundos:20}")
+    private long esperaCierreSegundos;
+
+    private BlockingQueue<SolicitudObra> cola;
+    private final Map<String, SolicitudObra> solicitudes = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<SolicitudObra> terminadas = new ConcurrentLinkedQueue<>();    //En orden de finalizacion.
+    private ExecutorService workers;
+    private volatile boolean activo;
+    private volatile boolean aceptando;
+    private volatile long ultimaPurga;
+
+    private Timer latenciaCommit;
+    private Counter rechazadasPorCola;
+    private Counter desalojadas;
+
+    @PostConstruct
+    public void iniciar() {
+        cola = new ArrayBlockingQueue<>(capacidad);
+        Gauge.builder("obras.ingreso.cola", cola, BlockingQueue::size)
+            .description("Obras en espera de ser validadas y guardadas")
+            .register(meterRegistry);
+        latenciaCommit = Timer.builder("obras.ingreso.commit")
+            .description("Duracion de cada commit de un lote de obras")
+            .register(meterRegistry);
+        rechazadasPorCola = Counter.builder("obras.ingreso.rechazadas")
+            .description("Obras no aceptadas por tener la cola llena")
+            .register(meterRegistry);
+        Gauge.builder("obras.ingreso.solicitudes", solicitudes, Map::size)
+            .description("Solicitudes cuyo estado se puede consultar")
+            .register(meterRegistry);
+        desalojadas = Counter.builder("obras.ingreso.solicitudes.desalojadas")
+            .description("Solicitudes terminadas descartadas antes de tiempo por superar el maximo")
+            .register(meterRegistry);
+
+        activo = true;
+        aceptando = true;
+        workers = Executors.newFixedThreadPool(hilos);
+        for (int i = 0; i < hilos; i++) {
+            workers.submit(this::procesarCola);
+        }
+    }
+
+    //Deja de aceptar obras y espera a que los workers vacien la cola. Las que no se llegan a guardar
+    //en esa espera quedan RECHAZADAS (en vez de perderse en EN_COLA).
+    @PreDestroy
+    public void detener() {
+        aceptando = false;
+        activo = false;
+        workers.shutdown();
+        try {
+            if (!workers.awaitTermination(esperaCierreSegundos, TimeUnit.SECONDS)) {
+                workers.shutdownNow();
+                workers.awaitTermination(1, TimeUnit.SECONDS);
+            }
+        } catch (InterruptedException e) {
+            workers.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        SolicitudObra pendiente;
+        while ((pendiente = cola.poll()) != null) {
+            terminar(pendiente, EstadoSolicitudObra.RECHAZADA, "El servicio se detuvo antes de guardar la obra, reintentar");
+        }
+    }
+
+    public boolean estaAceptando() {
+        return aceptando;
+    }
+
+    //Encola una obra. Retorna vacio si la cola esta llena o si el servicio se esta deteniendo.
+    public Optional<SolicitudObra> encolar(Obra obra) {
+        if (!aceptando) {
+            return Optional.empty();
+        }
+        SolicitudObra solicitud = new SolicitudObra(UUID.randomUUID().toString(), obra);
+        solicitudes.put(solicitud.getId(), solicitud);
+        if (!cola.offer(solicitud)) {
+            solicitudes.remove(solicitud.getId());
+            rechazadasPorCola.increment();
+            return Optional.empty();
+        }
+        return Optional.of(solicitud);
+    }
+
+    public Optional<SolicitudObra> obtenerSolicitud(String id) {
+        return Optional.ofNullable(solicitudes.get(id));
+    }
+
+    private void procesarCola() {
+        List<SolicitudObra> lote = new ArrayList<>(tamanioLote);
+        //Una vez detenido se sigue hasta vaciar la cola.
+        while (activo || !cola.isEmpty()) {
+            try {
+                purgarTerminadas();
+                SolicitudObra primera = cola.poll(activo ? 1000 : 0, TimeUnit.MILLISECONDS);
+                if (primera == null) {
+                    continue;
+                }
+                lote.add(primera);
+                cola.drainTo(lote, tamanioLote - 1);
+                procesarLote(lote);
+            } catch (InterruptedException e) {
+                //Lo que quede en la cola lo rechaza detener().
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                System.err.println("Error: " + e.getMessage());
+                for (SolicitudObra solicitud : lote) {
+                    if (solicitud.getEstado() == EstadoSolicitudObra.EN_COLA) {
+                        terminar(solicitud, EstadoSolicitudObra.RECHAZADA, e.getMessage());
+                    }
+                }
+            } finally {
+                lote.clear();
+            }
+        }
+    }
+
+    //Valida cada obra del lote y guarda las validas agrupadas por shard.
+    private void procesarLote(List<SolicitudObra> lote) {
+        Map<Integer, List<SolicitudObra>> porShard = new LinkedHashMap<>();
+        for (SolicitudObra solicitud : lote) {
+            try {
+                Obra obra = obraService.prepararObraNueva(solicitud.getObra());
+                porShard.computeIfAbsent(shardRouter.shardDeCliente(obra.getCliente().getId()), k -> new ArrayList<>()).add(solicitud);
+            } catch (Exception e) {
+                terminar(solicitud, EstadoSolicitudObra.RECHAZADA, e.getMessage());
+            }
+        }
+        for (Map.Entry<Integer, List<SolicitudObra>> grupo : porShard.entrySet()) {
+            guardarGrupo(grupo.getKey(), grupo.getValue());
+        }
+    }
+
+    private void guardarGrupo(int shard, List<SolicitudObra> grupo) {
+        List<Obra> obras = grupo.stream().map(SolicitudObra::getObra).toList();
+        try {
+            latenciaCommit.record(() -> {
+                obraService.guardarObras(shard, obras);
+            });
+            for (SolicitudObra solicitud : grupo) {
+                terminar(solicitud, EstadoSolicitudObra.CREADA, null);
+            }
+        } catch (RuntimeException e) {
+            //Si falla el lote (ej: coordenadas repetidas) se guarda de a una para no rechazar las obras correctas.
+            if (grupo.size() == 1) {
+                terminar(grupo.get(0), EstadoSolicitudObra.RECHAZADA, e.getMessage());
+                return;
+            }
+            for (SolicitudObra solicitud : grupo) {
+                guardarGrupo(shard, List.of(solicitud));
+            }
+        }
+    }
+
+    private void terminar(SolicitudObra solicitud, EstadoSolicitudObra estado, String mensaje) {
+        solicitud.setIdObra(estado == EstadoSolicitudObra.CREADA ? solicitud.getObra().getId() : null);
+        solicitud.setMensaje(mensaje);
+        solicitud.setObra(null);
+        solicitud.setFinalizadaEn(System.currentTimeMillis());
+        solicitud.setEstado(estado);
+        terminadas.add(solicitud);
+        desalojarExcedentes();
+    }
+
+    //Descarta las solicitudes terminadas mas viejas mientras se supere el maximo.
+    private void desalojarExcedentes() {
+        while (solicitudes.size() > maximoSolicitudes) {
+            SolicitudObra masVieja = terminadas.poll();
+            if (masVieja == null) {
+                return;
+            }
+            if (solicitudes.remove(masVieja.getId(), masVieja)) {
+                desalojadas.increment();
+            }
+        }
+    }
+
+    private void purgarTerminadas() {
+        long ahora = System.currentTimeMillis();
+        if (ahora - ultimaPurga < INTERVALO_PURGA_MS) {
+            return;
+        }
+        ultimaPurga = ahora;
+        long limite = ahora - RETENCION_MS;
+        //terminadas esta ordenada por finalizacion, alcanza con recorrer el principio.
+        SolicitudObra masVieja;
+        while ((masVieja = terminadas.peek()) != null && masVieja.getFinalizadaEn() < limite) {
+            if (terminadas.remove(masVieja)) {
+                solicitudes.remove(masVieja.getId(), masVieja);
+            }
+        }
+    }
+}
@@ -1,24 +1,34 @@
 package jeronimo.margitic.service;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import jeronimo.margitic.exception.MaximoDescubiertoExcedidoException;
 import jeronimo.margitic.exception.MaximoObrasEnEjecucionException;
 import jeronimo.margitic.model.Cliente;
+import jeronimo.margitic.model.EstadoFinalizacion;
 import jeronimo.margitic.model.EstadoObra;
 import jeronimo.margitic.model.Obra;
+import jeronimo.margitic.model.ResultadoFinalizacion;
 import jeronimo.margitic.repository.ObraRepository;
+import jeronimo.margitic.util.Dinero;
 
 @Service
 public class ObraService {
 
     @Value("${MAXIMO_DESCUBIERTO}")
-    private Float maximoDescubiertoPermitido;
+    private long maximoDescubiertoPermitido;    //En pesos, se compara en centavos.
     //private Float maximoDescubiertoPermitido = Float.parseFloat(maximoDescubiertoString);
 
     @Autowired
@@ -27,28 +37,68 @@ public class ObraService {
     @Autowired
     ClienteService clienteService;
 
+    @Autowired
+    TransactionTemplate transactionTemplate;
+
+    @Autowired
+    ShardRouter shardRouter;
+
+    @Autowired
+    GeneradorIds generadorIds;
+
+    @Autowired
+    EstadoCreditoClientes estadoCreditoClientes;
+
+    @Autowired
+    SnapshotsTodos snapshotsTodos;
+
+    //Cantidad aproximada de obras que se finalizan por transaccion en la finalizacion masiva.
+    @Value("${obras.finalizacion.tamanio-lote:500}")
+    private int tamanioLoteFinalizacion;
+
     //Obtiene una obra acorde al id.
     public Optional<Obra> obtenerObraPorId(int id) {
-        return obraRepository.findById(id);
+        return shardRouter.buscarEnTodos(() -> obraRepository.findById(id));
     }
 
     //Obtiene todas las obras.
     public List<Obra> obtenerTodas() {
-        return obraRepository.findAll();
+        return shardRouter.concatenarTodos(() -> obraRepository.findAll());
     }
 
     //Crea una obra.
     public Obra crearObra(Obra obra) throws Exception{
+        prepararObraNueva(obra);
+        //Se guarda en la BD, en el shard del cliente.
+        Obra obraNueva = shardRouter.enShardDeCliente(obra.getCliente().getId(), () -> obraRepository.save(obra));
+        snapshotsTodos.invalidarObras();
+        return obraNueva;
+    }
+
+    //Valida una obra nueva y le asigna id, dejandola lista para guardar.
+    public Obra prepararObraNueva(Obra obra) throws Exception{
         //Se validan los datos de la obra.
         validarObra(obra);
-        //Se guarda en la BD.
-        Obra obraNueva = obraRepository.save(obra);
-        return obraNueva;
+        obra.setId(generadorIds.siguienteId("obra", () -> shardRouter.maximoEnTodos(obraRepository::findMaximoId)));
+        obra.setNuevo(true);
+        return obra;
+    }
+
+    //Guarda un grupo de obras ya preparadas, todas del mismo shard, en una sola transaccion.
+    public List<Obra> guardarObras(int shard, List<Obra> obras) {
+        List<Obra> guardadas = shardRouter.enShard(shard, () -> transactionTemplate.execute(status -> obraRepository.saveAll(obras)));
+        snapshotsTodos.invalidarObras();
+        return guardadas;
     }
 
     //Elimina una obra segun id.
     public void eliminarObra(int id) {
-        obraRepository.deleteById(id);
+        //No se conoce el cliente de la obra, se elimina en el shard donde este.
+        shardRouter.enTodos(() -> {
+            obraRepository.deleteById(id);
+            return null;
+        });
+        snapshotsTodos.invalidarObras();
     }
 
     //Actualiza una obra.
@@ -56,7 +106,8 @@ public class ObraService {
         //Se validan los datos de la obra.
         validarObra(obra);
         //Se guarda en la BD.
-        Obra obraActualizada = obraRepository.save(obra);
+        Obra obraActualizada = shardRouter.enShardDeCliente(obra.getCliente().getId(), () -> obraRepository.save(obra));
+        snapshotsTodos.invalidarObras();
         return obraActualizada;
     }
 
@@ -66,6 +117,10 @@ public class ObraService {
         //Antes de la validacion una obra esta PENDIENTE.
         pendienteObra(obra);
         try{
+            //El id del cliente es un int: si no viene en el cuerpo queda en 0 (los ids arrancan en 1).
+            if (obra.getCliente() == null || obra.getCliente().getId() == 0) {
+                throw new IllegalArgumentException("La obra debe indicar el id del cliente.");
+            }
             verificarMaximoObrasEnEjecucion(obra);
             verificarMaximoDescubierto(obra);
             validarCoordenadas(obra.getCoordenadas());
@@ -90,16 +145,34 @@ public class ObraService {
     }
 
     //Valida las que el maximoDescubierto sea suficiente para el presupuestoEstimado de la obra
+    //Se usa la tabla EstadoCreditoClientes; si el cliente no esta en la tabla se usa la entidad.
     private void verificarMaximoDescubierto(Obra obra) throws MaximoDescubiertoExcedidoException {
-        if (obra.getCliente().getMaximoDescubierto() - obra.getPresupuestoEstimado() < maximoDescubiertoPermitido) {
+        verificarMaximoDescubierto(obra, true);
+    }
+
+    //Con usarTabla=false se usa la entidad, que dentro de una transaccion tiene los cambios todavia no confirmados.
+    private void verificarMaximoDescubierto(Obra obra, boolean usarTabla) throws MaximoDescubiertoExcedidoException {
+        Cliente cliente = obra.getCliente();
+        long maximoDescubierto = usarTabla
+            ? estadoCreditoClientes.maximoDescubierto(cliente.getId(), cliente.getMaximoDescubierto())
+            : cliente.getMaximoDescubierto();
+        if (maximoDescubierto - obra.getPresupuestoEstimado() < Dinero.deUnidades(maximoDescubiertoPermitido)) {
             throw new MaximoDescubiertoExcedidoException("La obra excede el maximo descubierto permitido para el cliente.");
         }
     }
 
     //Valida que un cliente no exceda la cantidad de obras que tiene permitidas
     public void verificarMaximoObrasEnEjecucion(Obra obra) throws MaximoObrasEnEjecucionException{
+        verificarMaximoObrasEnEjecucion(obra, true);
+    }
+
+    private void verificarMaximoObrasEnEjecucion(Obra obra, boolean usarTabla) throws MaximoObrasEnEjecucionException{
         Cliente cliente = obra.getCliente();
-        if (cliente.getMaximoObrasEnEjecucion() + 1 > cliente.getMaximoObrasEnEjecucion()) {
+        boolean alcanzoMaximoEntidad = cliente.getObrasEnEjecucion() + 1 > cliente.getMaximoObrasEnEjecucion();
+        boolean alcanzoMaximo = usarTabla
+            ? estadoCreditoClientes.alcanzoMaximoObras(cliente.getId(), alcanzoMaximoEntidad)
+            : alcanzoMaximoEntidad;
+        if (alcanzoMaximo) {
             throw new MaximoObrasEnEjecucionException("El cliente ha alcanzado el máximo de obras en ejecución permitidas.");
         }
     }
@@ -129,11 +202,121 @@ public class ObraService {
         return obra;
     }
 
+    //Finaliza un conjunto de obras.
+    //Las obras se agrupan por cliente y se procesan en lotes, cada uno en su propia transaccion.
+    //El contador de obras en ejecucion y la habilitacion de obras pendientes se hacen una sola vez por cliente.
+    //Retorna un resultado por cada id recibido, en el mismo orden; los ids repetidos se procesan una sola vez.
+    public List<ResultadoFinalizacion> finalizarObras(List<Integer> ids) {
+        Map<Integer, ResultadoFinalizacion> resultados = new LinkedHashMap<>();
+        for (Integer id : ids) {
+            resultados.putIfAbsent(id, new ResultadoFinalizacion(id, EstadoFinalizacion.NO_ENCONTRADA, "El id no corresponde a ninguna obra."));
+        }
+
+        //Se agrupan los ids por shard y por cliente (las obras sin cliente quedan bajo la clave null).
+        List<List<Object[]>> filasPorShard = shardRouter.enTodos(() -> obraRepository.findClientePorObra(resultados.keySet()));
+        for (int shard = 0; shard < filasPorShard.size(); shard++) {
+            Map<Integer, List<Integer>> obrasPorCliente = new LinkedHashMap<>();
+            for (Object[] fila : filasPorShard.get(shard)) {
+                obrasPorCliente.computeIfAbsent((Integer) fila[1], k -> new ArrayList<>()).add((Integer) fila[0]);
+            }
+
+            //Se arman lotes con clientes completos, para no ajustar un mismo cliente en dos transacciones.
+            List<List<Integer>> lote = new ArrayList<>();
+            int obrasEnLote = 0;
+            for (List<Integer> obrasCliente : obrasPorCliente.values()) {
+                lote.add(obrasCliente);
+                obrasEnLote += obrasCliente.size();
+                if (obrasEnLote >= tamanioLoteFinalizacion) {
+                    finalizarLote(shard, lote, resultados);
+                    lote = new ArrayList<>();
+                    obrasEnLote = 0;
+                }
+            }
+            if (!lote.isEmpty()) {
+                finalizarLote(shard, lote, resultados);
+            }
+        }
+        //Cambian obras y contadores de clientes.
+        snapshotsTodos.invalidarClientes();
+
+        List<ResultadoFinalizacion> respuesta = new ArrayList<>(ids.size());
+        Set<Integer> vistos = new HashSet<>();
+        for (Integer id : ids) {
+            respuesta.add(vistos.add(id)
+                ? resultados.get(id)
+                : new ResultadoFinalizacion(id, EstadoFinalizacion.DUPLICADA, "El id aparece mas de una vez en la solicitud."));
+        }
+        return respuesta;
+    }
+
+    //Finaliza un lote de obras (agrupadas por cliente) en una transaccion sobre el shard indicado.
+    private void finalizarLote(int shard, List<List<Integer>> lote, Map<Integer, ResultadoFinalizacion> resultados) {
+        List<Integer> idsLote = new ArrayList<>();
+        lote.forEach(idsLote::addAll);
+        try {
+            shardRouter.enShard(shard, () -> transactionTemplate.executeWithoutResult(status -> {
+                Map<Integer, Obra> obras = new HashMap<>();
+                for (Obra obra : obraRepository.findAllById(idsLote)) {
+                    obras.put(obra.getId(), obra);
+                }
+                List<Obra> modificadas = new ArrayList<>();
+                for (List<Integer> obrasCliente : lote) {
+                    finalizarObrasCliente(obrasCliente, obras, modificadas, resultados);
+                }
+                //Con hibernate.jdbc.batch_size los updates se envian en batch al hacer flush.
+                obraRepository.saveAll(modificadas);
+            }));
+        } catch (RuntimeException e) {
+            System.err.println("Error: " + e.getMessage());
+            for (Integer id : idsLote) {
+                resultados.put(id, new ResultadoFinalizacion(id, EstadoFinalizacion.ERROR, e.getMessage()));
+            }
+        }
+    }
+
+    //Finaliza las obras de un mismo cliente, ajusta su contador una sola vez y habilita las pendientes que entren.
+    private void finalizarObrasCliente(List<Integer> obrasCliente, Map<Integer, Obra> obras, List<Obra> modificadas, Map<Integer, ResultadoFinalizacion> resultados) {
+        Cliente cliente = null;
+        int habilitadasFinalizadas = 0;
+        for (Integer id : obrasCliente) {
+            Obra obra = obras.get(id);
+            if (obra == null) {
+                continue;
+            }
+            if (obra.getEstadoObra() == EstadoObra.FINALIZADA) {
+                resultados.put(id, new ResultadoFinalizacion(id, EstadoFinalizacion.YA_FINALIZADA, "La obra ya estaba finalizada."));
+                continue;
+            }
+            if (obra.getEstadoObra() == EstadoObra.HABILITADA) {
+                habilitadasFinalizadas++;
+            }
+            obra.setEstadoObra(EstadoObra.FINALIZADA);
+            modificadas.add(obra);
+            cliente = obra.getCliente();
+            resultados.put(id, new ResultadoFinalizacion(id, EstadoFinalizacion.FINALIZADA, null));
+        }
+        if (cliente == null) {
+            return;
+        }
+        //Se decrementan las obras en ejecucion del cliente de una sola vez.
+        clienteService.actualizarObrasEnEjecucion(cliente, -habilitadasFinalizadas);
+        //Se habilitan obras pendientes del cliente hasta que una no pase la verificacion.
+        for (Obra pendiente : obraRepository.findByClienteIdAndEstadoObraOrderByIdAsc(cliente.getId(), EstadoObra.PENDIENTE)) {
+            habilitarObraEspecifica(pendiente);
+            if (pendiente.getEstadoObra() != EstadoObra.HABILITADA) {
+                break;
+            }
+            modificadas.add(pendiente);
+        }
+        //El cliente se guarda con el commit del lote; la tabla se actualiza solo si el commit se hace.
+        estadoCreditoClientes.actualizarAlConfirmar(cliente);
+    }
+
     //Se habilita una obra para un cliente determinado.
     //Metodo usado cuando se finaliza una obra de un cliente.
     private Optional<Obra> habilitarObra(Cliente cliente) {
         //Se obtiene la primer obra en estado pendiente del cliente en cuestion.
-        Optional<Obra> obraPendiente = obtenerTodas().stream().filter(o -> o.getEstadoObra() == EstadoObra.PENDIENTE).filter(o -> o.getCliente().equals(cliente)).findFirst();
+        Optional<Obra> obraPendiente = shardRouter.enShardDeCliente(cliente.getId(), () -> obraRepository.findByClienteIdAndEstadoObraOrderByIdAsc(cliente.getId(), EstadoObra.PENDIENTE)).stream().findFirst();
         try{
             //Si la obra buscada existe entonces se verifica y se habilita.
             if (obraPendiente.isPresent()) {
@@ -150,11 +333,12 @@ public class ObraService {
     }
 
     //En este caso en vez de buscar una obra para un cliente, se pasa una obra en especifico.
+    //Se usa dentro de la transaccion de finalizarObras, por eso verifica contra la entidad y no contra la tabla.
     private Obra habilitarObraEspecifica(Obra obra) {
         try {
             //Se verifica y se habilita.
-            verificarMaximoObrasEnEjecucion(obra);
-            verificarMaximoDescubierto(obra);
+            verificarMaximoObrasEnEjecucion(obra, false);
+            verificarMaximoDescubierto(obra, false);
             obra.setEstadoObra(EstadoObra.HABILITADA);
             asignarObra(obra);
         } catch (Exception e) {
@@ -0,0 +1,89 @@
+package jeronimo.margitic.service;
+
+import java.io.IOException;
+
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.web.client.ResponseExtractor;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import jeronimo.margitic.util.Dinero;
+
+//Lee la respuesta de pedido-service token por token y suma el total (en centavos) de los pedidos
+//que todavia no fueron entregados o rechazados.
+//Solo se miran los campos "total" y "estado" de cada pedido; el resto se saltea sin armar objetos,
+//por lo que la memoria usada no depende de la cantidad de pedidos.
+//Cualquier forma inesperada (un objeto en vez del arreglo, un elemento que no es un pedido, un total invalido)
+//lanza una excepcion en vez de retornar un total parcial: un saldo menor al real aprobaria pedidos de mas.
+public class SaldoPedidosExtractor implements ResponseExtractor<Long> {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    @Override
+    public Long extractData(ClientHttpResponse response) throws IOException {
+        long total = 0;
+        try (JsonParser parser = JSON_FACTORY.createParser(response.getBody())) {
+            JsonToken token = parser.nextToken();
+            //Sin cuerpo no hay pedidos (igual que antes con la lista deserializada en null).
+            if (token == null) {
+                return total;
+            }
+            if (token != JsonToken.START_ARRAY) {
+                throw new JsonParseException(parser, "Se esperaba un arreglo de pedidos y se recibio " + token);
+            }
+            while ((token = parser.nextToken()) == JsonToken.START_OBJECT) {
+                total += leerPedido(parser);
+            }
+            if (token != JsonToken.END_ARRAY) {
+                throw new JsonParseException(parser, "Se esperaba un pedido y se recibio " + token);
+            }
+            if (parser.nextToken() != null) {
+                throw new JsonParseException(parser, "Contenido inesperado despues del arreglo de pedidos.");
+            }
+        }
+        return total;
+    }
+
+    //Lee un pedido (el parser esta parado en su START_OBJECT) y retorna su total si cuenta para el saldo.
+    //Un pedido sin total o con un total que no es un monto hace fallar la consulta, para no aprobar un saldo incompleto.
+    private long leerPedido(JsonParser parser) throws IOException {
+        Long totalPedido = null;
+        boolean cuenta = true;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String campo = parser.currentName();
+            JsonToken valor = parser.nextToken();
+            if ("total".equals(campo)) {
+                totalPedido = leerTotal(parser, valor);
+            } else if ("estado".equals(campo) && valor == JsonToken.VALUE_STRING) {
+                cuenta = !esEstadoCerrado(parser.getText());
+            } else {
+                //Objetos y arreglos anidados (detalle, historial, etc) se saltean completos.
+                parser.skipChildren();
+            }
+        }
+        if (totalPedido == null) {
+            throw new JsonParseException(parser, "Pedido sin total.");
+        }
+        return cuenta ? totalPedido : 0;
+    }
+
+    private static long leerTotal(JsonParser parser, JsonToken valor) throws IOException {
+        try {
+            if (valor.isNumeric()) {
+                return Dinero.aCentavos(parser.getDecimalValue());
+            } else if (valor == JsonToken.VALUE_STRING) {
+                return Dinero.aCentavos(parser.getText());
+            }
+        } catch (ArithmeticException | NumberFormatException e) {
+            throw new JsonParseException(parser, "Total de pedido invalido: " + parser.getText(), e);
+        }
+        throw new JsonParseException(parser, "Total de pedido invalido: " + valor);
+    }
+
+    private static boolean esEstadoCerrado(String estado) {
+        return "ENTREGADO".equalsIgnoreCase(estado) || "RECHAZADO".equalsIgnoreCase(estado);
+    }
+}
@@ -0,0 +1,93 @@
+package jeronimo.margitic.service;
+
+import java.util.List;
+
+import org.hibernate.Hibernate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import jeronimo.margitic.config.ShardProperties;
+import jeronimo.margitic.model.Cliente;
+import jeronimo.margitic.model.Obra;
+import jeronimo.margitic.model.UsuarioHabilitado;
+import jeronimo.margitic.repository.ClienteRepository;
+import jeronimo.margitic.repository.ObraRepository;
+
+//Mueve cada cliente (con sus obras y usuarios habilitados) al shard que le corresponde segun ShardRouter.
+//Se usa despues de cambiar la cantidad de shards; se activa con shards.rebalancear=true
+//(se verifica al ejecutar y no con @ConditionalOnProperty, que en la imagen AOT queda fijado al momento del build).
+//Cada cliente se copia primero al shard destino y recien despues se borra del origen,
+//por lo que si se interrumpe se puede volver a ejecutar sin perder datos.
+@Component
+public class ShardRebalanceador implements ApplicationRunner {
+
+    @Autowired
+    ShardProperties properties;
+
+    @Autowired
+    ShardRouter shardRouter;
+
+    @Autowired
+    ClienteRepository clienteRepository;
+
+    @Autowired
+    ObraRepository obraRepository;
+
+    @Autowired
+    TransactionTemplate transactionTemplate;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!properties.isRebalancear()) {
+            return;
+        }
+        int movidos = 0;
+        for (int origen = 0; origen < shardRouter.cantidadShards(); origen++) {
+            List<Cliente> clientes = shardRouter.enShard(origen, () -> clienteRepository.findAll());
+            for (Cliente cliente : clientes) {
+                int destino = shardRouter.shardDeCliente(cliente.getId());
+                if (destino != origen) {
+                    moverCliente(cliente.getId(), origen, destino);
+                    movidos++;
+                }
+            }
+        }
+        System.out.println("Rebalanceo finalizado, clientes movidos: " + movidos);
+    }
+
+    private void moverCliente(int idCliente, int origen, int destino) {
+        //Se lee el cliente completo en el origen.
+        Cliente cliente = shardRouter.enShard(origen, () -> transactionTemplate.execute(status -> {
+            Cliente c = clienteRepository.findById(idCliente).orElseThrow();
+            Hibernate.initialize(c.getUsuariosHabilitados());
+            return c;
+        }));
+        List<Obra> obras = shardRouter.enShard(origen, () -> obraRepository.findByClienteId(idCliente));
+
+        //Se copia al destino. Los ids de usuarios habilitados son propios de cada shard, se generan de nuevo.
+        shardRouter.enShard(destino, () -> transactionTemplate.executeWithoutResult(status -> {
+            if (clienteRepository.existsById(idCliente)) {
+                return;
+            }
+            if (cliente.getUsuariosHabilitados() != null) {
+                for (UsuarioHabilitado usuario : cliente.getUsuariosHabilitados()) {
+                    usuario.setId(0);
+                }
+            }
+            Cliente copia = clienteRepository.save(cliente);
+            for (Obra obra : obras) {
+                obra.setCliente(copia);
+            }
+            obraRepository.saveAll(obras);
+        }));
+
+        //Se borra del origen.
+        shardRouter.enShard(origen, () -> transactionTemplate.executeWithoutResult(status -> {
+            obraRepository.deleteAllById(obras.stream().map(Obra::getId).toList());
+            clienteRepository.deleteById(idCliente);
+        }));
+    }
+}
@@ -0,0 +1,137 @@
+package jeronimo.margitic.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import jakarta.annotation.PreDestroy;
+import jeronimo.margitic.config.ShardContext;
+import jeronimo.margitic.config.ShardProperties;
+
+//Decide en que shard vive cada cliente (junto con sus obras y usuarios) y ejecuta operaciones sobre uno o todos los shards.
+//Con un solo shard todas las operaciones se ejecutan directamente en el hilo actual.
+//La conexion (y el EntityManager) de una transaccion quedan fijos en el shard donde empezo, por eso
+//spring.jpa.open-in-view=false: sin una transaccion abierta cada llamada a un repositorio toma su propia conexion.
+@Component
+public class ShardRouter {
+
+    private final int cantidadShards;
+    private final ExecutorService executor;
+    private final TransactionTemplate transaccionNueva;
+
+    public ShardRouter(ShardProperties properties, PlatformTransactionManager transactionManager) {
+        this.cantidadShards = properties.cantidadShards();
+        this.executor = cantidadShards > 1 ? Executors.newFixedThreadPool(properties.hilosConsultaEfectivos()) : null;
+        this.transaccionNueva = new TransactionTemplate(transactionManager);
+        this.transaccionNueva.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    public int cantidadShards() {
+        return cantidadShards;
+    }
+
+    //Shard de un cliente segun el hash de su id.
+    public int shardDeCliente(int clienteId) {
+        return shardDeCliente(clienteId, cantidadShards);
+    }
+
+    //Se mezclan los bits del id para que ids consecutivos se repartan entre los shards.
+    static int shardDeCliente(int clienteId, int cantidadShards) {
+        int h = clienteId * 0x9E3779B9;
+        h ^= (h >>> 16);
+        return Math.floorMod(h, cantidadShards);
+    }
+
+    //Ejecuta la operacion con el shard indicado como destino de las conexiones.
+    //Si hay una transaccion abierta sobre otro shard, la operacion se ejecuta en una transaccion nueva
+    //(la abierta queda suspendida), ya que la conexion de la transaccion abierta es la de su shard.
+    public <T> T enShard(int shard, Supplier<T> operacion) {
+        Integer anterior = ShardContext.actual();
+        boolean otraTransaccion = TransactionSynchronizationManager.isActualTransactionActive()
+            && shard != (anterior == null ? 0 : anterior);
+        ShardContext.establecer(shard);
+        try {
+            return otraTransaccion ? transaccionNueva.execute(status -> operacion.get()) : operacion.get();
+        } finally {
+            ShardContext.establecer(anterior);
+        }
+    }
+
+    public void enShard(int shard, Runnable operacion) {
+        enShard(shard, () -> {
+            operacion.run();
+            return null;
+        });
+    }
+
+    public <T> T enShardDeCliente(int clienteId, Supplier<T> operacion) {
+        return enShard(shardDeCliente(clienteId), operacion);
+    }
+
+    public void enShardDeCliente(int clienteId, Runnable operacion) {
+        enShard(shardDeCliente(clienteId), operacion);
+    }
+
+    //Maximo de un valor entero entre todos los shards (ej: el maximo id).
+    public int maximoEnTodos(Supplier<Integer> consulta) {
+        return enTodos(consulta).stream().max(Integer::compare).orElse(0);
+    }
+
+    //Ejecuta la operacion en todos los shards en paralelo; el resultado i corresponde al shard i.
+    public <T> List<T> enTodos(Supplier<T> operacion) {
+        List<T> resultados = new ArrayList<>(cantidadShards);
+        if (executor == null) {
+            resultados.add(enShard(0, operacion));
+            return resultados;
+        }
+        List<CompletableFuture<T>> futuros = new ArrayList<>(cantidadShards);
+        for (int i = 0; i < cantidadShards; i++) {
+            int shard = i;
+            futuros.add(CompletableFuture.supplyAsync(() -> enShard(shard, operacion), executor));
+        }
+        for (CompletableFuture<T> futuro : futuros) {
+            try {
+                resultados.add(futuro.join());
+            } catch (CompletionException e) {
+                //Se relanza la excepcion original (ej: DataAccessException), como si la consulta fuera en este hilo.
+                if (e.getCause() instanceof RuntimeException causa) {
+                    throw causa;
+                } else if (e.getCause() instanceof Error error) {
+                    throw error;
+                }
+                throw e;
+            }
+        }
+        return resultados;
+    }
+
+    //Ejecuta una consulta de listado en todos los shards y concatena los resultados.
+    public <T> List<T> concatenarTodos(Supplier<List<T>> consulta) {
+        List<T> todos = new ArrayList<>();
+        enTodos(consulta).forEach(todos::addAll);
+        return todos;
+    }
+
+    //Busca en todos los shards y retorna el primer resultado encontrado.
+    public <T> Optional<T> buscarEnTodos(Supplier<Optional<T>> busqueda) {
+        return enTodos(busqueda).stream().filter(Optional::isPresent).map(Optional::get).findFirst();
+    }
+
+    @PreDestroy
+    public void cerrar() {
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+}
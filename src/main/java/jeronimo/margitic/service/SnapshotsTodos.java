@@ -0,0 +1,120 @@
+package jeronimo.margitic.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jeronimo.margitic.config.SnapshotJson;
+import jeronimo.margitic.repository.ClienteRepository;
+import jeronimo.margitic.repository.ObraRepository;
+
+//Snapshots pre-serializados de los endpoints /todos de clientes y obras.
+//ClienteService y ObraService los invalidan despues de cada escritura (para esta replica); los cambios de otras
+//replicas se detectan con el resumen de escrituras de cada tabla (cantidad de filas y suma de actualizado_en),
+//que no agrega nada a la transaccion de la escritura.
+@Service
+public class SnapshotsTodos {
+
+    @Autowired
+    ClienteRepository clienteRepository;
+
+    @Autowired
+    ObraRepository obraRepository;
+
+    @Autowired
+    ShardRouter shardRouter;
+
+    @Autowired
+    TransactionTemplate transactionTemplate;
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    @Value("${todos.snapshot.gzip:true}")
+    private boolean comprimir;
+
+    @Value("${todos.snapshot.verificacion-ms:1000}")
+    private long verificacionMs;
+
+    private TransactionTemplate soloLectura;
+    private SnapshotJson clientes;
+    private SnapshotJson obras;
+
+    @PostConstruct
+    public void iniciar() {
+        soloLectura = new TransactionTemplate(transactionTemplate.getTransactionManager());
+        soloLectura.setReadOnly(true);
+        //Cada shard se serializa dentro de su propia transaccion (de solo lectura),
+        //para poder recorrer las relaciones lazy igual que en una solicitud.
+        //Las obras incluyen a su cliente, por eso su listado depende de las dos tablas.
+        clientes = new SnapshotJson("clientes", () -> shardRouter.enTodos(() -> serializar(clienteRepository::findAll)),
+            () -> resumenEnBd(false), verificacionMs, comprimir);
+        obras = new SnapshotJson("obras", () -> shardRouter.enTodos(() -> serializar(obraRepository::findAll)),
+            () -> resumenEnBd(true), verificacionMs, comprimir);
+    }
+
+    @PreDestroy
+    public void detener() {
+        clientes.cerrar();
+        obras.cerrar();
+    }
+
+    public SnapshotJson clientes() {
+        return clientes;
+    }
+
+    public SnapshotJson obras() {
+        return obras;
+    }
+
+    //Un cambio en un cliente tambien cambia las obras que lo incluyen.
+    public void invalidarClientes() {
+        clientes.invalidar();
+        obras.invalidar();
+    }
+
+    public void invalidarObras() {
+        obras.invalidar();
+    }
+
+    //Combina [cantidad, suma de actualizadoEn] de las tablas del listado en todos los shards.
+    //Cambia con cualquier alta, baja o modificacion confirmada, sin importar el orden en que se confirmen.
+    private long resumenEnBd(boolean incluirObras) {
+        List<List<Object[]>> porShard = shardRouter.enTodos(() -> {
+            List<Object[]> resumen = new ArrayList<>(clienteRepository.findResumenEscrituras());
+            resumen.addAll(clienteRepository.findResumenEscriturasUsuarios());
+            if (incluirObras) {
+                resumen.addAll(obraRepository.findResumenEscrituras());
+            }
+            return resumen;
+        });
+        long huella = 1;
+        for (List<Object[]> resumen : porShard) {
+            for (Object[] fila : resumen) {
+                huella = 31 * huella + ((Number) fila[0]).longValue();
+                huella = 31 * huella + ((Number) fila[1]).longValue();
+            }
+        }
+        return huella;
+    }
+
+    private byte[] serializar(Supplier<?> consulta) {
+        return soloLectura.execute(status -> {
+            try {
+                return objectMapper.writeValueAsBytes(consulta.get());
+            } catch (JsonProcessingException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+    }
+}
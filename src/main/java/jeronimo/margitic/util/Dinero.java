@@ -0,0 +1,85 @@
+package jeronimo.margitic.util;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+
+//Montos de dinero representados como long en centavos (punto fijo con 2 decimales).
+//Evita los errores de redondeo de float y las conversiones boxeadas al sumar montos.
+public final class Dinero {
+
+    public static final long CENTAVOS_POR_UNIDAD = 100;
+
+    private Dinero() {
+    }
+
+    //Convierte una cantidad entera de pesos a centavos.
+    public static long deUnidades(long unidades) {
+        return Math.multiplyExact(unidades, CENTAVOS_POR_UNIDAD);
+    }
+
+    //Convierte un monto decimal (ej: "1500.25") a centavos, redondeando al centavo mas cercano.
+    public static long aCentavos(BigDecimal monto) {
+        return monto.movePointRight(2).setScale(0, RoundingMode.HALF_EVEN).longValueExact();
+    }
+
+    //Convierte un monto en texto a centavos.
+    public static long aCentavos(String monto) {
+        return aCentavos(new BigDecimal(monto.trim()));
+    }
+
+    //Convierte un valor numerico deserializado de JSON (Integer, Long, Double, BigDecimal...) a centavos.
+    //Los Double se convierten con BigDecimal.valueOf (su representacion decimal mas corta), asi 1.015 da 102 centavos
+    //y no 101 como con Math.round(d*100); los valores que no entran en un long lanzan ArithmeticException.
+    public static long aCentavos(Object monto) {
+        if (monto == null) {
+            throw new IllegalArgumentException("El monto no puede ser nulo.");
+        } else if (monto instanceof Integer || monto instanceof Long || monto instanceof Short || monto instanceof Byte) {
+            return deUnidades(((Number) monto).longValue());
+        } else if (monto instanceof BigDecimal) {
+            return aCentavos((BigDecimal) monto);
+        } else if (monto instanceof Double || monto instanceof Float) {
+            double valor = ((Number) monto).doubleValue();
+            if (!Double.isFinite(valor)) {
+                throw new IllegalArgumentException("Monto invalido: " + monto);
+            }
+            return aCentavos(monto instanceof Float ? new BigDecimal(monto.toString()) : BigDecimal.valueOf(valor));
+        }
+        return aCentavos(monto.toString());
+    }
+
+    //Convierte centavos a un monto decimal con 2 decimales.
+    public static BigDecimal aDecimal(long centavos) {
+        return BigDecimal.valueOf(centavos, 2);
+    }
+
+    //Escribe un monto en centavos como numero decimal en pesos, manteniendo el formato del JSON.
+    public static class Serializador extends JsonSerializer<Long> {
+        @Override
+        public void serialize(Long centavos, JsonGenerator gen, SerializerProvider serializers) throws IOException {
+            gen.writeNumber(aDecimal(centavos));
+        }
+    }
+
+    //Lee un monto en pesos (numero o texto) y lo convierte a centavos.
+    public static class Deserializador extends JsonDeserializer<Long> {
+        @Override
+        public Long deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
+            JsonToken token = p.currentToken();
+            if (token == JsonToken.VALUE_NUMBER_INT || token == JsonToken.VALUE_NUMBER_FLOAT) {
+                return aCentavos(p.getDecimalValue());
+            } else if (token == JsonToken.VALUE_STRING) {
+                return aCentavos(p.getText());
+            }
+            return (Long) ctxt.handleUnexpectedToken(Long.class, p);
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package jeronimo.margitic;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jeronimo.margitic.model.Cliente;
+import jeronimo.margitic.model.EstadoObra;
+import jeronimo.margitic.model.Obra;
+import jeronimo.margitic.repository.ClienteRepository;
+import jeronimo.margitic.repository.ObraRepository;
+import jeronimo.margitic.service.ClienteService;
+import jeronimo.margitic.service.GeneradorIds;
+import jeronimo.margitic.service.ShardRebalanceador;
+import jeronimo.margitic.service.ShardRouter;
+
+//Levanta la aplicacion con tres shards H2 (ver application-shards.properties).
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("shards")
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class ShardingIntegrationTest {
+
+    private static final int CANTIDAD_CLIENTES = 12;
+    private static final long DNI_BASE = 300_000_000L;
+
+    @Autowired
+    MockMvc mockMvc;
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    @Autowired
+    ClienteService clienteService;
+
+    @Autowired
+    ClienteRepository clienteRepository;
+
+    @Autowired
+    ObraRepository obraRepository;
+
+    @Autowired
+    ShardRouter shardRouter;
+
+    @Autowired
+    GeneradorIds generadorIds;
+
+    @Autowired
+    ShardRebalanceador shardRebalanceador;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    private final List<Cliente> clientes = new ArrayList<>();
+
+    @BeforeAll
+    void crearClientes() throws Exception {
+        for (int i = 0; i < CANTIDAD_CLIENTES; i++) {
+            clientes.add(clienteService.crearCliente(nuevoCliente(i)));
+        }
+    }
+
+    //Cada shard tiene exactamente los clientes que le asigna ShardRouter; las secuencias de ids solo viven en el shard 0.
+    //Las consultas sobre obra y usuario_habilitado fallarian si el esquema no se hubiera creado en ese shard.
+    @Test
+    void cadaShardTieneLasFilasQueLeCorresponden() {
+        assertEquals(3, shardRouter.cantidadShards());
+        int[] esperados = new int[3];
+        for (Cliente cliente : clientes) {
+            esperados[shardRouter.shardDeCliente(cliente.getId())]++;
+        }
+        String clientesDelTest = "select count(*) from cliente where dni between " + DNI_BASE + " and " + (DNI_BASE + CANTIDAD_CLIENTES - 1);
+        String obrasDelTest = "select count(*) from obra o join cliente c on o.id_cliente = c.id_cliente where c.dni between "
+            + DNI_BASE + " and " + (DNI_BASE + CANTIDAD_CLIENTES - 1);
+        String usuariosDelTest = "select count(*) from usuario_habilitado u join cliente c on u.id_cliente = c.id_cliente where c.dni between "
+            + DNI_BASE + " and " + (DNI_BASE + CANTIDAD_CLIENTES - 1);
+        for (int shard = 0; shard < 3; shard++) {
+            assertEquals(esperados[shard], contar(shard, clientesDelTest), "clientes en shard " + shard);
+            assertEquals(0, contar(shard, obrasDelTest), "obras en shard " + shard);
+            assertEquals(0, contar(shard, usuariosDelTest), "usuarios en shard " + shard);
+            if (shard == 0) {
+                assertEquals(1, contar(shard, "select count(*) from secuencia_id where nombre = 'cliente'"));
+            } else {
+                assertEquals(0, contar(shard, "select count(*) from secuencia_id"), "secuencias en shard " + shard);
+            }
+        }
+    }
+
+    @Test
+    void cadaClienteSeGuardaSoloEnSuShard() {
+        Set<Integer> shardsUsados = new HashSet<>();
+        for (Cliente cliente : clientes) {
+            int esperado = shardRouter.shardDeCliente(cliente.getId());
+            shardsUsados.add(esperado);
+            for (int shard = 0; shard < 3; shard++) {
+                assertEquals(shard == esperado ? 1 : 0, contarCliente(shard, cliente.getId()), "cliente " + cliente.getId() + " en shard " + shard);
+            }
+        }
+        assertTrue(shardsUsados.size() > 1, "los clientes deberian repartirse entre los shards");
+    }
+
+    @Test
+    void buscaPorIdEnElShardDelCliente() throws Exception {
+        for (Cliente cliente : clientes) {
+            mockMvc.perform(get("/api/clientes/" + cliente.getId()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.dni").value(cliente.getDni()));
+        }
+    }
+
+    @Test
+    void todosJuntaLosClientesDeTodosLosShards() throws Exception {
+        String json = mockMvc.perform(get("/api/clientes/todos"))
+            .andExpect(status().isOk())
+            .andReturn().getResponse().getContentAsString();
+        List<Map<String, Object>> respuesta = objectMapper.readValue(json, new TypeReference<List<Map<String, Object>>>() {});
+        Set<Long> dnis = new HashSet<>();
+        for (Map<String, Object> cliente : respuesta) {
+            dnis.add(((Number) cliente.get("dni")).longValue());
+        }
+        for (Cliente cliente : clientes) {
+            assertTrue(dnis.contains(cliente.getDni()), "falta el dni " + cliente.getDni());
+        }
+    }
+
+    @Test
+    void buscaPorDniEnTodosLosShards() throws Exception {
+        Cliente fueraDelShard0 = clientes.stream()
+            .filter(c -> shardRouter.shardDeCliente(c.getId()) != 0)
+            .findFirst().orElseThrow();
+        mockMvc.perform(get("/api/clientes/dni/" + fueraDelShard0.getDni()))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.id").value(fueraDelShard0.getId()));
+        mockMvc.perform(get("/api/clientes/dni/" + (DNI_BASE + 999)))
+            .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void elRebalanceoMueveClienteYObrasAlShardCorrecto() {
+        int idCliente = generadorIds.siguienteId("cliente", () -> shardRouter.maximoEnTodos(clienteRepository::findMaximoId));
+        int correcto = shardRouter.shardDeCliente(idCliente);
+        int incorrecto = (correcto + 1) % 3;
+
+        Cliente cliente = nuevoCliente(100);
+        cliente.setId(idCliente);
+        cliente.setNuevo(true);
+        Cliente guardado = shardRouter.enShard(incorrecto, () -> clienteRepository.save(cliente));
+        Obra obra = Obra.builder()
+            .id(generadorIds.siguienteId("obra", () -> shardRouter.maximoEnTodos(obraRepository::findMaximoId)))
+            .direccion("Calle 123")
+            .coordenadas("[-31.6,-60.7]")
+            .cliente(guardado)
+            .presupuestoEstimado(150000)
+            .estadoObra(EstadoObra.HABILITADA)
+            .nuevo(true)
+            .build();
+        shardRouter.enShard(incorrecto, () -> obraRepository.save(obra));
+
+        shardRebalanceador.run(null);
+
+        assertEquals(0, contarCliente(incorrecto, idCliente));
+        assertEquals(1, contarCliente(correcto, idCliente));
+        assertEquals(0, contar(incorrecto, "select count(*) from obra where id_cliente = " + idCliente));
+        assertEquals(1, contar(correcto, "select count(*) from obra where id_cliente = " + idCliente));
+    }
+
+    private Cliente nuevoCliente(int i) {
+        return Cliente.builder()
+            .nombre("Cliente")
+            .apellido("Prueba " + i)
+            .dni(DNI_BASE + i)
+            .fechaNacimiento(LocalDate.of(1990, 1, 1))
+            .numeroTelefono(String.format("34250%05d", i))
+            .correoElectronico("cliente" + i + "@prueba.com")
+            .maximoDescubierto(10_000_000)
+            .maximoObrasEnEjecucion(3)
+            .build();
+    }
+
+    private int contarCliente(int shard, int idCliente) {
+        return contar(shard, "select count(*) from cliente where id_cliente = " + idCliente);
+    }
+
+    private int contar(int shard, String consulta) {
+        return shardRouter.enShard(shard, () -> jdbcTemplate.queryForObject(consulta, Integer.class));
+    }
+}
@@ -0,0 +1,211 @@
+package jeronimo.margitic.config;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+class CacheIdempotenciaTest {
+
+    private static final long TTL_SEGUNDOS = 600;
+
+    private final RelojManual reloj = new RelojManual();
+    private final CacheIdempotencia cache = new CacheIdempotencia(new ObjectMapper(), 2, TTL_SEGUNDOS, 5, reloj);
+    private final AtomicInteger ejecuciones = new AtomicInteger();
+    private final ExecutorService executor = Executors.newFixedThreadPool(2);
+
+    @AfterEach
+    void cerrar() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void unReintentoRecibeLaMismaRespuestaSinEjecutar() {
+        ResponseEntity<String> primera = cache.ejecutar("op", "a", Map.of("total", 10), accion("ok"));
+        ResponseEntity<String> reintento = cache.ejecutar("op", "a", Map.of("total", 10), accion("otra"));
+        assertSame(primera, reintento);
+        assertEquals(1, ejecuciones.get());
+
+        //Otra operacion con la misma clave es independiente.
+        cache.ejecutar("otra-op", "a", Map.of("total", 10), accion("ok"));
+        assertEquals(2, ejecuciones.get());
+    }
+
+    //Un reintento que llega mientras la original sigue en curso espera su resultado.
+    @Test
+    void unReintentoEsperaALaOriginalEnCurso() throws Exception {
+        CountDownLatch iniciada = new CountDownLatch(1);
+        CountDownLatch liberar = new CountDownLatch(1);
+        Future<ResponseEntity<String>> original = executor.submit(() -> cache.ejecutar("op", "a", "cuerpo", () -> {
+            ejecuciones.incrementAndGet();
+            iniciada.countDown();
+            esperar(liberar);
+            return ResponseEntity.ok("original");
+        }));
+        iniciada.await(5, TimeUnit.SECONDS);
+        Future<ResponseEntity<String>> reintento = executor.submit(() -> cache.ejecutar("op", "a", "cuerpo", accion("reintento")));
+
+        Thread.sleep(100);
+        assertFalse(reintento.isDone());
+        liberar.countDown();
+
+        assertEquals("original", original.get(5, TimeUnit.SECONDS).getBody());
+        assertSame(original.get(), reintento.get(5, TimeUnit.SECONDS));
+        assertEquals(1, ejecuciones.get());
+    }
+
+    @Test
+    void laMismaClaveConOtroCuerpoDa422() {
+        cache.ejecutar("op", "a", Map.of("total", 10), accion("ok"));
+        ResponseEntity<String> respuesta = cache.ejecutar("op", "a", Map.of("total", 11), accion("ok"));
+        assertEquals(HttpStatus.UNPROCESSABLE_ENTITY, respuesta.getStatusCode());
+        assertEquals(1, ejecuciones.get());
+    }
+
+    @Test
+    void laEntradaVenceDespuesDelTtl() {
+        cache.ejecutar("op", "a", "cuerpo", accion("ok"));
+        reloj.avanzar(Duration.ofSeconds(TTL_SEGUNDOS - 1));
+        cache.ejecutar("op", "a", "cuerpo", accion("ok"));
+        assertEquals(1, ejecuciones.get());
+
+        reloj.avanzar(Duration.ofSeconds(2));
+        cache.ejecutar("op", "a", "cuerpo", accion("ok"));
+        assertEquals(2, ejecuciones.get());
+    }
+
+    //Con maximo 2 entradas, la tercera clave desaloja a la mas vieja.
+    @Test
+    void seDesalojaLaEntradaMasVieja() {
+        cache.ejecutar("op", "a", "cuerpo", accion("ok"));
+        cache.ejecutar("op", "b", "cuerpo", accion("ok"));
+        cache.ejecutar("op", "c", "cuerpo", accion("ok"));
+        assertEquals(3, ejecuciones.get());
+
+        cache.ejecutar("op", "c", "cuerpo", accion("ok"));
+        assertEquals(3, ejecuciones.get());
+        cache.ejecutar("op", "a", "cuerpo", accion("ok"));
+        assertEquals(4, ejecuciones.get());
+    }
+
+    //Una entrada en curso no se desaloja aunque sea la mas vieja: su reintento la espera en vez de ejecutar otra vez.
+    @Test
+    void noSeDesalojaUnaEntradaEnCurso() throws Exception {
+        CountDownLatch iniciada = new CountDownLatch(1);
+        CountDownLatch liberar = new CountDownLatch(1);
+        Future<ResponseEntity<String>> original = executor.submit(() -> cache.ejecutar("op", "a", "cuerpo", () -> {
+            ejecuciones.incrementAndGet();
+            iniciada.countDown();
+            esperar(liberar);
+            return ResponseEntity.ok("original");
+        }));
+        iniciada.await(5, TimeUnit.SECONDS);
+        cache.ejecutar("op", "b", "cuerpo", accion("ok"));
+        cache.ejecutar("op", "c", "cuerpo", accion("ok"));
+        assertEquals(3, ejecuciones.get());
+
+        Future<ResponseEntity<String>> reintento = executor.submit(() -> cache.ejecutar("op", "a", "cuerpo", accion("reintento")));
+        Thread.sleep(100);
+        assertFalse(reintento.isDone());
+        liberar.countDown();
+        assertSame(original.get(5, TimeUnit.SECONDS), reintento.get(5, TimeUnit.SECONDS));
+        assertEquals(3, ejecuciones.get());
+
+        //Se desalojaron las terminadas ("b" y luego "c").
+        cache.ejecutar("op", "b", "cuerpo", accion("ok"));
+        assertEquals(4, ejecuciones.get());
+    }
+
+    @Test
+    void losErroresDelServidorNoSeGuardan() {
+        cache.ejecutar("op", "a", "cuerpo", () -> {
+            ejecuciones.incrementAndGet();
+            return ResponseEntity.internalServerError().build();
+        });
+        assertThrows(IllegalStateException.class, () -> cache.ejecutar("op", "a", "cuerpo", () -> {
+            ejecuciones.incrementAndGet();
+            throw new IllegalStateException("falla");
+        }));
+        cache.ejecutar("op", "a", "cuerpo", accion("ok"));
+        assertEquals(3, ejecuciones.get());
+
+        //Las respuestas 4xx si se guardan.
+        cache.ejecutar("op", "b", "cuerpo", () -> {
+            ejecuciones.incrementAndGet();
+            return ResponseEntity.badRequest().build();
+        });
+        assertEquals(HttpStatus.BAD_REQUEST, cache.ejecutar("op", "b", "cuerpo", accion("ok")).getStatusCode());
+        assertEquals(4, ejecuciones.get());
+    }
+
+    //Un 429 (ej: cola de ingreso llena) no se guarda: el reintento con la misma clave vuelve a intentar.
+    @Test
+    void unRechazoPorCargaNoSeGuarda() {
+        cache.ejecutar("op", "a", "cuerpo", () -> {
+            ejecuciones.incrementAndGet();
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).build();
+        });
+        assertEquals(HttpStatus.OK, cache.ejecutar("op", "a", "cuerpo", accion("ok")).getStatusCode());
+        assertEquals(2, ejecuciones.get());
+    }
+
+    private Supplier<ResponseEntity<String>> accion(String cuerpo) {
+        return () -> {
+            ejecuciones.incrementAndGet();
+            return ResponseEntity.ok(cuerpo);
+        };
+    }
+
+    private static void esperar(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static class RelojManual extends Clock {
+
+        private Instant ahora = Instant.parse("2024-01-01T00:00:00Z");
+
+        void avanzar(Duration duracion) {
+            ahora = ahora.plus(duracion);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return ahora;
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package jeronimo.margitic.config;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class LimitadorAdaptativoTest {
+
+    private static final long UN_MS = 1_000_000L;
+
+    //Con la latencia estable y el limite en uso, cada solicitud suma SUAVIZADO * sqrt(limite).
+    @Test
+    void creceConRaizCuadradaSiLaLatenciaSeMantiene() {
+        LimitadorAdaptativo limitador = new LimitadorAdaptativo(20, 4, 200);
+        ocupar(limitador, 15);
+
+        limitador.liberar(UN_MS, true);
+        assertEquals(20 + 0.2 * Math.sqrt(20), limitador.limiteEstimado(), 1e-9);
+        assertEquals(20, limitador.limite());
+
+        //Con 15 en curso sigue habiendo evidencia mientras el limite no pase de 30.
+        double anterior = limitador.limiteEstimado();
+        for (int i = 0; i < 8; i++) {
+            limitador.adquirir(true, 1.0);
+            limitador.liberar(UN_MS, true);
+            assertTrue(limitador.limiteEstimado() > anterior);
+            anterior = limitador.limiteEstimado();
+        }
+        assertTrue(limitador.limite() > 20);
+    }
+
+    //Si se usa menos de la mitad del limite no hay evidencia para subirlo.
+    @Test
+    void noCreceSiElLimiteNoSeUsa() {
+        LimitadorAdaptativo limitador = new LimitadorAdaptativo(20, 4, 200);
+        for (int i = 0; i < 30; i++) {
+            limitador.adquirir(true, 1.0);
+            limitador.liberar(UN_MS, true);
+        }
+        assertEquals(20, limitador.limiteEstimado(), 1e-9);
+    }
+
+    @Test
+    void bajaCuandoSubeLaLatencia() {
+        LimitadorAdaptativo limitador = new LimitadorAdaptativo(50, 4, 200);
+        ocupar(limitador, 40);
+        for (int i = 0; i < 10; i++) {
+            limitador.liberar(UN_MS, true);
+            limitador.adquirir(true, 1.0);
+        }
+        double antes = limitador.limiteEstimado();
+
+        double anterior = antes;
+        for (int i = 0; i < 10; i++) {
+            limitador.liberar(10 * UN_MS, true);
+            limitador.adquirir(true, 1.0);
+            assertTrue(limitador.limiteEstimado() < anterior);
+            anterior = limitador.limiteEstimado();
+        }
+        assertTrue(limitador.limite() < antes * 0.6);
+    }
+
+    @Test
+    void bajaConErrores() {
+        LimitadorAdaptativo limitador = new LimitadorAdaptativo(100, 4, 200);
+        limitador.adquirir(true, 1.0);
+        limitador.liberar(UN_MS, false);
+        assertEquals(90, limitador.limiteEstimado(), 1e-9);
+        assertEquals(90, limitador.limite());
+        assertEquals(0, limitador.enCurso());
+    }
+
+    @Test
+    void respetaElMinimoYElMaximo() {
+        LimitadorAdaptativo limitador = new LimitadorAdaptativo(20, 4, 200);
+        for (int i = 0; i < 100; i++) {
+            limitador.adquirir(true, 1.0);
+            limitador.liberar(UN_MS, false);
+        }
+        assertEquals(4, limitador.limite());
+
+        limitador = new LimitadorAdaptativo(195, 4, 200);
+        ocupar(limitador, 150);
+        for (int i = 0; i < 100; i++) {
+            limitador.liberar(UN_MS, true);
+            limitador.adquirir(true, 1.0);
+            assertTrue(limitador.limiteEstimado() <= 200);
+        }
+        assertEquals(200, limitador.limite());
+    }
+
+    //Las no criticas solo usan fraccionNoCritica del limite; el resto queda para las criticas.
+    @Test
+    void reservaLugarParaLasCriticas() {
+        LimitadorAdaptativo limitador = new LimitadorAdaptativo(10, 4, 200);
+        for (int i = 0; i < 8; i++) {
+            assertTrue(limitador.adquirir(false, 0.8));
+        }
+        assertFalse(limitador.adquirir(false, 0.8));
+        assertTrue(limitador.adquirir(true, 0.8));
+        assertTrue(limitador.adquirir(true, 0.8));
+        assertFalse(limitador.adquirir(true, 0.8));
+        assertEquals(10, limitador.enCurso());
+    }
+
+    private static void ocupar(LimitadorAdaptativo limitador, int cantidad) {
+        for (int i = 0; i < cantidad; i++) {
+            assertTrue(limitador.adquirir(true, 1.0));
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package jeronimo.margitic.config;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class SnapshotJsonTest {
+
+    private final AtomicLong versionBd = new AtomicLong();
+    private final AtomicInteger generaciones = new AtomicInteger();
+    private SnapshotJson snapshot;
+
+    @AfterEach
+    void cerrar() {
+        snapshot.cerrar();
+    }
+
+    //Un cambio hecho por otra replica (solo cambia la version en la BD) se ve despues del intervalo de verificacion.
+    @Test
+    void reconstruyeCuandoCambiaLaVersionDeLaBd() throws Exception {
+        snapshot = new SnapshotJson("prueba", () -> List.of(json("[" + generaciones.incrementAndGet() + "]")), versionBd::get, 50, false);
+        assertEquals("[1]", texto(esperarVigente()));
+
+        versionBd.incrementAndGet();
+        Thread.sleep(80);
+        assertEquals("[2]", texto(esperarContenido("[2]")));
+
+        //Sin cambios en la BD solo se verifica la version, no se vuelve a generar.
+        Thread.sleep(80);
+        esperarVigente();
+        Thread.sleep(20);
+        assertEquals(2, generaciones.get());
+    }
+
+    //Mientras se reconstruye por un cambio de otra replica se sigue sirviendo el snapshot anterior.
+    @Test
+    void sirveElSnapshotAnteriorMientrasSeReconstruye() throws Exception {
+        CountDownLatch reconstruyendo = new CountDownLatch(1);
+        CountDownLatch liberar = new CountDownLatch(1);
+        snapshot = new SnapshotJson("prueba", () -> {
+            if (generaciones.incrementAndGet() > 1) {
+                reconstruyendo.countDown();
+                esperar(liberar);
+            }
+            return List.of(json("[" + generaciones.get() + "]"));
+        }, versionBd::get, 50, false);
+        assertEquals("[1]", texto(esperarVigente()));
+
+        versionBd.incrementAndGet();
+        Thread.sleep(80);
+        assertEquals("[1]", texto(snapshot.vigente()));
+        assertTrue(reconstruyendo.await(5, TimeUnit.SECONDS));
+        assertEquals("[1]", texto(snapshot.vigente()));
+
+        liberar.countDown();
+        assertEquals("[2]", texto(esperarContenido("[2]")));
+    }
+
+    @Test
+    void laInvalidacionLocalNoEsperaAlIntervalo() throws Exception {
+        snapshot = new SnapshotJson("prueba", () -> List.of(json("[" + generaciones.incrementAndGet() + "]")), versionBd::get, 60_000, false);
+        esperarVigente();
+        snapshot.invalidar();
+        assertEquals("[2]", texto(esperarVigente()));
+    }
+
+    //Despues de una falla no se reintenta en cada solicitud.
+    @Test
+    void esperaAntesDeReintentarUnaReconstruccionFallida() throws Exception {
+        snapshot = new SnapshotJson("prueba", () -> {
+            generaciones.incrementAndGet();
+            throw new IllegalStateException("BD caida");
+        }, versionBd::get, 50, false);
+        long fin = System.currentTimeMillis() + 300;
+        while (System.currentTimeMillis() < fin) {
+            assertNull(snapshot.vigente());
+            Thread.sleep(5);
+        }
+        assertEquals(1, generaciones.get());
+    }
+
+    private SnapshotJson.Snapshot esperarVigente() throws InterruptedException {
+        long fin = System.currentTimeMillis() + 5_000;
+        SnapshotJson.Snapshot vigente = snapshot.vigente();
+        while (vigente == null && System.currentTimeMillis() < fin) {
+            Thread.sleep(5);
+            vigente = snapshot.vigente();
+        }
+        assertNotNull(vigente);
+        return vigente;
+    }
+
+    private SnapshotJson.Snapshot esperarContenido(String contenido) throws InterruptedException {
+        long fin = System.currentTimeMillis() + 5_000;
+        SnapshotJson.Snapshot vigente = snapshot.vigente();
+        while ((vigente == null || !texto(vigente).equals(contenido)) && System.currentTimeMillis() < fin) {
+            Thread.sleep(5);
+            vigente = snapshot.vigente();
+        }
+        assertNotNull(vigente);
+        return vigente;
+    }
+
+    private static void esperar(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static byte[] json(String texto) {
+        return texto.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String texto(SnapshotJson.Snapshot snapshot) {
+        return new String(snapshot.json(), StandardCharsets.UTF_8);
+    }
+}
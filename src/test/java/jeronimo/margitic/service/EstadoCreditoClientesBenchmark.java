@@ -0,0 +1,91 @@
+package jeronimo.margitic.service;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import jeronimo.margitic.model.Cliente;
+
+//Compara las verificaciones de credito sobre la tabla con la misma consulta sobre un HashMap<Integer, Cliente>.
+//No es un test: se corre con el main (mvn test-compile y luego ejecutar esta clase con el classpath de test).
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EstadoCreditoClientesBenchmark {
+
+    @Param({"1000", "100000"})
+    int cantidadClientes;
+
+    private EstadoCreditoClientes tabla;
+    private Map<Integer, Cliente> mapa;
+    private int[] consultas;
+    private int siguiente;
+
+    @Setup
+    public void preparar() {
+        //Misma configuracion que en produccion: las consultas no van a la BD, la recarga corre en otro hilo.
+        tabla = new EstadoCreditoClientes();
+        mapa = new HashMap<>();
+        for (int id = 1; id <= cantidadClientes; id++) {
+            Cliente cliente = Cliente.builder()
+                .id(id)
+                .obrasEnEjecucion(id % 4)
+                .maximoObrasEnEjecucion(3)
+                .maximoDescubierto(id * 1000L)
+                .build();
+            tabla.actualizar(cliente);
+            mapa.put(id, cliente);
+        }
+        Random random = new Random(1);
+        consultas = new int[4096];
+        for (int i = 0; i < consultas.length; i++) {
+            consultas[i] = 1 + random.nextInt(cantidadClientes);
+        }
+    }
+
+    private int siguienteId() {
+        int id = consultas[siguiente];
+        siguiente = (siguiente + 1) & (consultas.length - 1);
+        return id;
+    }
+
+    //Las mismas llamadas que hace ObraService al verificar una obra.
+    @Benchmark
+    public void tabla(Blackhole bh) {
+        int id = siguienteId();
+        bh.consume(tabla.alcanzoMaximoObras(id, false));
+        bh.consume(tabla.maximoDescubierto(id, 0));
+    }
+
+    @Benchmark
+    public void hashMap(Blackhole bh) {
+        Cliente cliente = mapa.get(siguienteId());
+        if (cliente != null) {
+            bh.consume(cliente.getObrasEnEjecucion() >= cliente.getMaximoObrasEnEjecucion());
+            bh.consume(cliente.getMaximoDescubierto());
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder().include(EstadoCreditoClientesBenchmark.class.getSimpleName()).build()).run();
+    }
+}
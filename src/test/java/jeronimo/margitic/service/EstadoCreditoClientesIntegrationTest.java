@@ -0,0 +1,146 @@
+package jeronimo.margitic.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import jeronimo.margitic.model.Cliente;
+import jeronimo.margitic.model.EstadoFinalizacion;
+import jeronimo.margitic.model.EstadoObra;
+import jeronimo.margitic.model.Obra;
+import jeronimo.margitic.model.ResultadoFinalizacion;
+import jeronimo.margitic.repository.ClienteRepository;
+import jeronimo.margitic.repository.ObraRepository;
+
+//Verifica que la tabla en memoria coincida con la BD despues de las escrituras (perfil con tres shards H2).
+@SpringBootTest
+@ActiveProfiles("shards")
+class EstadoCreditoClientesIntegrationTest {
+
+    @Autowired
+    EstadoCreditoClientes estadoCreditoClientes;
+
+    @Autowired
+    ClienteService clienteService;
+
+    @Autowired
+    ObraService obraService;
+
+    @Autowired
+    ClienteRepository clienteRepository;
+
+    @Autowired
+    ObraRepository obraRepository;
+
+    @Autowired
+    ShardRouter shardRouter;
+
+    @Autowired
+    GeneradorIds generadorIds;
+
+    @Autowired
+    TransactionTemplate transactionTemplate;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Test
+    void coincideConLaBdDespuesDeFinalizarObras() throws Exception {
+        Cliente cliente = clienteService.crearCliente(nuevoCliente(1));
+        Obra primera = guardarObra(cliente, EstadoObra.HABILITADA, "[1.5,1.5]");
+        Obra segunda = guardarObra(cliente, EstadoObra.HABILITADA, "[2.5,2.5]");
+        guardarObra(cliente, EstadoObra.HABILITADA, "[3.5,3.5]");
+        Obra pendiente = guardarObra(cliente, EstadoObra.PENDIENTE, "[4.5,4.5]");
+        actualizarEnBd(cliente.getId(), 3);
+
+        List<ResultadoFinalizacion> resultados = obraService.finalizarObras(List.of(primera.getId(), segunda.getId()));
+
+        assertEquals(EstadoFinalizacion.FINALIZADA, resultados.get(0).getResultado());
+        assertEquals(EstadoFinalizacion.FINALIZADA, resultados.get(1).getResultado());
+        assertEquals(EstadoObra.HABILITADA, shardRouter.enShardDeCliente(cliente.getId(), () -> obraRepository.findById(pendiente.getId().intValue())).orElseThrow().getEstadoObra());
+        //3 habilitadas - 2 finalizadas + 1 pendiente habilitada.
+        assertEquals(2, obrasEnBd(cliente.getId()));
+        assertFalse(estadoCreditoClientes.verificarConsistencia().contains(cliente.getId()));
+        assertEquals(50_000_000L - 100_000L, estadoCreditoClientes.maximoDescubierto(cliente.getId()));
+    }
+
+    @Test
+    void unRollbackNoCambiaLaTabla() throws Exception {
+        Cliente cliente = clienteService.crearCliente(nuevoCliente(2));
+        shardRouter.enShardDeCliente(cliente.getId(), () -> transactionTemplate.executeWithoutResult(status -> {
+            Cliente enBd = clienteRepository.findById(cliente.getId().intValue()).orElseThrow();
+            enBd.setObrasEnEjecucion(enBd.getMaximoObrasEnEjecucion());
+            estadoCreditoClientes.actualizarAlConfirmar(enBd);
+            status.setRollbackOnly();
+        }));
+        assertFalse(estadoCreditoClientes.alcanzoMaximoObras(cliente.getId()));
+        assertFalse(estadoCreditoClientes.verificarConsistencia().contains(cliente.getId()));
+    }
+
+    //Simula el cambio hecho por otra replica: la tabla no va a la BD en cada consulta, lo toma al recargarse.
+    @Test
+    void recargaLosCambiosDeOtraReplica() throws Exception {
+        Cliente cliente = clienteService.crearCliente(nuevoCliente(3));
+        assertTrue(estadoCreditoClientes.contiene(cliente.getId()));
+        assertFalse(estadoCreditoClientes.alcanzoMaximoObras(cliente.getId()));
+
+        shardRouter.enShardDeCliente(cliente.getId(), () -> jdbcTemplate.update(
+            "update cliente set obras_en_ejecucion = maximo_obras_en_ejecucion where id_cliente = ?", cliente.getId()));
+        assertFalse(estadoCreditoClientes.alcanzoMaximoObras(cliente.getId()));
+
+        estadoCreditoClientes.cargar();
+        assertTrue(estadoCreditoClientes.alcanzoMaximoObras(cliente.getId()));
+
+        shardRouter.enShardDeCliente(cliente.getId(), () -> jdbcTemplate.update("delete from cliente where id_cliente = ?", cliente.getId()));
+        estadoCreditoClientes.cargar();
+        assertFalse(estadoCreditoClientes.contiene(cliente.getId()));
+    }
+
+    private Obra guardarObra(Cliente cliente, EstadoObra estado, String coordenadas) {
+        Obra obra = Obra.builder()
+            .id(generadorIds.siguienteId("obra", () -> shardRouter.maximoEnTodos(obraRepository::findMaximoId)))
+            .direccion("Obra " + coordenadas)
+            .coordenadas(coordenadas)
+            .cliente(cliente)
+            .presupuestoEstimado(100_000)
+            .estadoObra(estado)
+            .nuevo(true)
+            .build();
+        return shardRouter.enShardDeCliente(cliente.getId(), () -> obraRepository.save(obra));
+    }
+
+    //Cambia las obras en ejecucion directamente en la BD y recarga la tabla.
+    private void actualizarEnBd(int idCliente, int obrasEnEjecucion) {
+        shardRouter.enShardDeCliente(idCliente, () -> jdbcTemplate.update(
+            "update cliente set obras_en_ejecucion = ? where id_cliente = ?", obrasEnEjecucion, idCliente));
+        estadoCreditoClientes.cargar();
+    }
+
+    private int obrasEnBd(int idCliente) {
+        return shardRouter.enShardDeCliente(idCliente, () -> jdbcTemplate.queryForObject(
+            "select obras_en_ejecucion from cliente where id_cliente = ?", Integer.class, idCliente));
+    }
+
+    private Cliente nuevoCliente(int i) {
+        return Cliente.builder()
+            .nombre("Cliente")
+            .apellido("Credito " + i)
+            .dni(400_000_000L + i)
+            .fechaNacimiento(LocalDate.of(1985, 6, 1))
+            .numeroTelefono(String.format("34260%05d", i))
+            .correoElectronico("credito" + i + "@prueba.com")
+            .maximoDescubierto(50_000_000)
+            .maximoObrasEnEjecucion(3)
+            .build();
+    }
+}
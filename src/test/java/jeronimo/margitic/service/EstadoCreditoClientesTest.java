@@ -0,0 +1,184 @@
+package jeronimo.margitic.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class EstadoCreditoClientesTest {
+
+    //Capacidad con la que arranca la tabla (EstadoCreditoClientes.CAPACIDAD_INICIAL).
+    private static final int CAPACIDAD_INICIAL = 1024;
+
+    private final EstadoCreditoClientes tabla = new EstadoCreditoClientes();
+
+    @Test
+    void guardaYActualizaElEstadoDeUnCliente() {
+        tabla.actualizar(7, 1, 3, 5000);
+        assertTrue(tabla.contiene(7));
+        assertFalse(tabla.alcanzoMaximoObras(7));
+        assertEquals(5000, tabla.maximoDescubierto(7));
+
+        tabla.actualizar(7, 3, 3, 4000);
+        assertEquals(1, tabla.cantidad());
+        assertTrue(tabla.alcanzoMaximoObras(7));
+        assertEquals(4000, tabla.maximoDescubierto(7));
+        assertFalse(tabla.contiene(8));
+    }
+
+    //Borra elementos de un mismo grupo de sondeo: los que siguen se tienen que correr sin perderse.
+    @Test
+    void eliminarNoCortaLaSecuenciaDeSondeo() {
+        List<Integer> colisiones = idsConPosicionIdeal(10, 4);
+        List<Integer> siguientes = idsConPosicionIdeal(11, 2);
+        for (int id : colisiones) {
+            tabla.actualizar(id, 0, 5, id);
+        }
+        for (int id : siguientes) {
+            tabla.actualizar(id, 0, 5, id);
+        }
+
+        tabla.eliminar(colisiones.get(1));
+        assertFalse(tabla.contiene(colisiones.get(1)));
+        for (int id : List.of(colisiones.get(0), colisiones.get(2), colisiones.get(3), siguientes.get(0), siguientes.get(1))) {
+            assertTrue(tabla.contiene(id), "falta " + id);
+            assertEquals(id, tabla.maximoDescubierto(id));
+        }
+
+        tabla.eliminar(colisiones.get(0));
+        tabla.eliminar(siguientes.get(0));
+        assertEquals(3, tabla.cantidad());
+        for (int id : List.of(colisiones.get(2), colisiones.get(3), siguientes.get(1))) {
+            assertTrue(tabla.contiene(id), "falta " + id);
+            assertEquals(id, tabla.maximoDescubierto(id));
+        }
+
+        //Eliminar un id que no esta no cambia nada.
+        tabla.eliminar(colisiones.get(0));
+        assertEquals(3, tabla.cantidad());
+    }
+
+    //El ultimo lugar de la tabla da la vuelta al principio.
+    @Test
+    void eliminarConSondeoQueDaLaVuelta() {
+        List<Integer> colisiones = idsConPosicionIdeal(CAPACIDAD_INICIAL - 1, 3);
+        for (int id : colisiones) {
+            tabla.actualizar(id, 1, 2, id);
+        }
+        tabla.eliminar(colisiones.get(0));
+        assertTrue(tabla.contiene(colisiones.get(1)));
+        assertTrue(tabla.contiene(colisiones.get(2)));
+        tabla.eliminar(colisiones.get(1));
+        assertTrue(tabla.contiene(colisiones.get(2)));
+        assertEquals(colisiones.get(2).longValue(), tabla.maximoDescubierto(colisiones.get(2)));
+    }
+
+    @Test
+    void creceSinPerderClientes() {
+        int cantidad = CAPACIDAD_INICIAL * 4;
+        for (int id = 1; id <= cantidad; id++) {
+            tabla.actualizar(id, id % 5, 5, id * 100L);
+        }
+        assertEquals(cantidad, tabla.cantidad());
+        for (int id = 1; id <= cantidad; id++) {
+            assertTrue(tabla.contiene(id));
+            assertEquals(id * 100L, tabla.maximoDescubierto(id));
+        }
+        assertFalse(tabla.contiene(cantidad + 1));
+    }
+
+    //Operaciones al azar comparadas contra un HashMap.
+    @Test
+    void coincideConUnHashMap() {
+        Random random = new Random(7);
+        Map<Integer, Long> esperado = new HashMap<>();
+        for (int i = 0; i < 50_000; i++) {
+            int id = 1 + random.nextInt(3_000);
+            if (random.nextInt(3) == 0) {
+                tabla.eliminar(id);
+                esperado.remove(id);
+            } else {
+                long descubierto = random.nextInt(1_000_000);
+                tabla.actualizar(id, 0, 1, descubierto);
+                esperado.put(id, descubierto);
+            }
+        }
+        assertEquals(esperado.size(), tabla.cantidad());
+        for (int id = 1; id <= 3_000; id++) {
+            assertEquals(esperado.containsKey(id), tabla.contiene(id), "id " + id);
+            if (esperado.containsKey(id)) {
+                assertEquals(esperado.get(id).longValue(), tabla.maximoDescubierto(id));
+            }
+        }
+    }
+
+    //Si el cliente no esta en la tabla se usa el valor de la entidad que pasa el llamador.
+    @Test
+    void sinElClienteSeUsaElValorDeLaEntidad() {
+        tabla.actualizar(7, 3, 3, 5000);
+        assertTrue(tabla.alcanzoMaximoObras(7, false));
+        assertEquals(5000, tabla.maximoDescubierto(7, 1));
+
+        tabla.eliminar(7);
+        assertFalse(tabla.alcanzoMaximoObras(7, false));
+        assertEquals(1, tabla.maximoDescubierto(7, 1));
+    }
+
+    //Lo que se confirma mientras cargar() lee la BD no se pisa con las filas leidas antes del cambio.
+    @Test
+    void cargarConservaLosCambiosHechosDuranteLaLectura() {
+        ShardRouter shardRouter = mock(ShardRouter.class);
+        tabla.shardRouter = shardRouter;
+        tabla.actualizar(1, 0, 3, 1000);
+        tabla.actualizar(2, 0, 3, 2000);
+        when(shardRouter.concatenarTodos(any())).thenAnswer(invocacion -> {
+            List<Object[]> filas = List.of(
+                new Object[] {1, 0, 3, 1000L},
+                new Object[] {2, 0, 3, 2000L},
+                new Object[] {3, 1, 3, 3000L});
+            //Confirmaciones de otras transacciones mientras se leian las filas.
+            tabla.actualizar(1, 3, 3, 500);
+            tabla.eliminar(2);
+            tabla.actualizar(4, 1, 3, 4000);
+            return filas;
+        });
+
+        tabla.cargar();
+
+        assertEquals(3, tabla.cantidad());
+        assertTrue(tabla.alcanzoMaximoObras(1));
+        assertEquals(500, tabla.maximoDescubierto(1));
+        assertFalse(tabla.contiene(2));
+        assertEquals(3000, tabla.maximoDescubierto(3));
+        assertEquals(4000, tabla.maximoDescubierto(4));
+
+        //Sin carga en curso las filas se toman tal cual.
+        when(shardRouter.concatenarTodos(any())).thenAnswer(invocacion -> List.<Object[]>of(new Object[] {1, 0, 3, 1000L}));
+        tabla.cargar();
+        assertEquals(1, tabla.cantidad());
+        assertEquals(1000, tabla.maximoDescubierto(1));
+    }
+
+    //Ids cuya posicion ideal en la tabla inicial es la indicada (mismo hash que EstadoCreditoClientes).
+    private static List<Integer> idsConPosicionIdeal(int posicion, int cantidad) {
+        List<Integer> ids = new ArrayList<>();
+        for (int id = 1; ids.size() < cantidad; id++) {
+            int h = id * 0x9E3779B9;
+            h ^= (h >>> 16);
+            if ((h & (CAPACIDAD_INICIAL - 1)) == posicion) {
+                ids.add(id);
+            }
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,105 @@
+package jeronimo.margitic.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jeronimo.margitic.model.Cliente;
+import jeronimo.margitic.model.EstadoSolicitudObra;
+import jeronimo.margitic.model.Obra;
+import jeronimo.margitic.model.SolicitudObra;
+
+class IngresoObrasAsyncTest {
+
+    private final ObraService obraService = mock(ObraService.class);
+    private final ShardRouter shardRouter = mock(ShardRouter.class);
+
+    //Las obras encoladas antes de detener se guardan aunque el worker este ocupado con otro lote.
+    @Test
+    void alDetenerGuardaLasObrasEnCola() throws Exception {
+        CountDownLatch guardando = new CountDownLatch(1);
+        when(obraService.guardarObras(anyInt(), anyList())).thenAnswer(invocacion -> {
+            guardando.countDown();
+            Thread.sleep(200);
+            return invocacion.getArgument(1);
+        });
+        IngresoObrasAsync ingreso = iniciar(20);
+
+        SolicitudObra primera = ingreso.encolar(nuevaObra()).orElseThrow();
+        assertTrue(guardando.await(5, TimeUnit.SECONDS));
+        List<SolicitudObra> enCola = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            enCola.add(ingreso.encolar(nuevaObra()).orElseThrow());
+        }
+
+        ingreso.detener();
+
+        assertEquals(EstadoSolicitudObra.CREADA, primera.getEstado());
+        for (SolicitudObra solicitud : enCola) {
+            assertEquals(EstadoSolicitudObra.CREADA, solicitud.getEstado());
+        }
+        assertFalse(ingreso.estaAceptando());
+        assertTrue(ingreso.encolar(nuevaObra()).isEmpty());
+    }
+
+    //Si la espera no alcanza, las obras que quedan en cola se rechazan en vez de quedar EN_COLA para siempre.
+    @Test
+    void alDetenerRechazaLoQueNoLlegaAGuardar() throws Exception {
+        CountDownLatch guardando = new CountDownLatch(1);
+        CountDownLatch liberar = new CountDownLatch(1);
+        when(obraService.guardarObras(anyInt(), anyList())).thenAnswer(invocacion -> {
+            guardando.countDown();
+            liberar.await();
+            return invocacion.getArgument(1);
+        });
+        IngresoObrasAsync ingreso = iniciar(0);
+
+        ingreso.encolar(nuevaObra()).orElseThrow();
+        assertTrue(guardando.await(5, TimeUnit.SECONDS));
+        SolicitudObra enCola = ingreso.encolar(nuevaObra()).orElseThrow();
+
+        ingreso.detener();
+        liberar.countDown();
+
+        assertEquals(EstadoSolicitudObra.RECHAZADA, enCola.getEstado());
+        assertTrue(enCola.getMensaje().contains("detuvo"));
+    }
+
+    private IngresoObrasAsync iniciar(long esperaCierreSegundos) throws Exception {
+        when(obraService.prepararObraNueva(any())).thenAnswer(invocacion -> invocacion.getArgument(0));
+        when(shardRouter.shardDeCliente(anyInt())).thenReturn(0);
+        IngresoObrasAsync ingreso = new IngresoObrasAsync();
+        ingreso.obraService = obraService;
+        ingreso.shardRouter = shardRouter;
+        ingreso.meterRegistry = new SimpleMeterRegistry();
+        ReflectionTestUtils.setField(ingreso, "capacidad", 100);
+        ReflectionTestUtils.setField(ingreso, "hilos", 1);
+        ReflectionTestUtils.setField(ingreso, "tamanioLote", 1);
+        ReflectionTestUtils.setField(ingreso, "maximoSolicitudes", 100);
+        ReflectionTestUtils.setField(ingreso, "esperaCierreSegundos", esperaCierreSegundos);
+        ingreso.iniciar();
+        return ingreso;
+    }
+
+    private Obra nuevaObra() {
+        return Obra.builder()
+            .direccion("Calle 123")
+            .cliente(Cliente.builder().id(1).build())
+            .presupuestoEstimado(1000)
+            .build();
+    }
+}
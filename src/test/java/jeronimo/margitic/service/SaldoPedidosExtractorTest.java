@@ -0,0 +1,55 @@
+package jeronimo.margitic.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.client.MockClientHttpResponse;
+
+class SaldoPedidosExtractorTest {
+
+    @Test
+    void sumaSoloLosPedidosAbiertos() throws Exception {
+        String json = "[{\"id\":1,\"total\":10.50,\"estado\":\"EN_PREPARACION\",\"detalle\":[{\"total\":999}]},"
+            + "{\"id\":2,\"estado\":\"ENTREGADO\",\"total\":5},"
+            + "{\"id\":3,\"total\":\"0.25\",\"historial\":{\"estado\":\"RECHAZADO\"}},"
+            + "{\"id\":4,\"total\":7,\"estado\":\"rechazado\"}]";
+        assertEquals(1075, extraer(json));
+        assertEquals(0, extraer("[]"));
+    }
+
+    @Test
+    void sinCuerpoNoHayPedidos() throws Exception {
+        assertEquals(0, extraer(""));
+    }
+
+    //Una respuesta con otra forma no puede dar un saldo menor al real.
+    @Test
+    void fallaAnteUnaRespuestaInesperada() {
+        assertThrows(IOException.class, () -> extraer("{\"content\":[{\"total\":10}],\"totalPages\":3}"));
+        assertThrows(IOException.class, () -> extraer("{\"error\":\"Internal Server Error\",\"status\":500}"));
+        assertThrows(IOException.class, () -> extraer("[{\"total\":10},5,{\"total\":20}]"));
+        assertThrows(IOException.class, () -> extraer("[{\"total\":10},null]"));
+        assertThrows(IOException.class, () -> extraer("[{\"total\":10}][]"));
+        assertThrows(IOException.class, () -> extraer("[{\"total\":10},{\"total\":20"));
+        assertThrows(IOException.class, () -> extraer("\"sin pedidos\""));
+    }
+
+    @Test
+    void fallaAnteUnTotalInvalido() {
+        assertThrows(IOException.class, () -> extraer("[{\"id\":1,\"estado\":\"EN_PREPARACION\"}]"));
+        assertThrows(IOException.class, () -> extraer("[{\"total\":null}]"));
+        assertThrows(IOException.class, () -> extraer("[{\"total\":\"mil\"}]"));
+        assertThrows(IOException.class, () -> extraer("[{\"total\":{\"monto\":10}}]"));
+        assertThrows(IOException.class, () -> extraer("[{\"total\":1e30}]"));
+    }
+
+    private long extraer(String json) throws Exception {
+        return new SaldoPedidosExtractor().extractData(
+            new MockClientHttpResponse(json.getBytes(StandardCharsets.UTF_8), HttpStatus.OK));
+    }
+}
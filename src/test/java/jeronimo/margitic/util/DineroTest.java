@@ -0,0 +1,87 @@
+package jeronimo.margitic.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.math.BigDecimal;
+
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jeronimo.margitic.model.Cliente;
+import jeronimo.margitic.model.Obra;
+
+class DineroTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+
+    @Test
+    void redondeaAlCentavoConHalfEven() {
+        assertEquals(100, Dinero.aCentavos(new BigDecimal("1.004")));
+        assertEquals(101, Dinero.aCentavos(new BigDecimal("1.006")));
+        //Los empates van al centavo par.
+        assertEquals(100, Dinero.aCentavos(new BigDecimal("1.005")));
+        assertEquals(102, Dinero.aCentavos(new BigDecimal("1.015")));
+        assertEquals(-100, Dinero.aCentavos(new BigDecimal("-1.005")));
+        assertEquals(150025, Dinero.aCentavos(new BigDecimal("1500.25")));
+    }
+
+    @Test
+    void convierteTextos() {
+        assertEquals(150025, Dinero.aCentavos("1500.25"));
+        assertEquals(150000, Dinero.aCentavos(" 1500 "));
+        assertEquals(1, Dinero.aCentavos("0.01"));
+        assertThrows(NumberFormatException.class, () -> Dinero.aCentavos("mil"));
+    }
+
+    @Test
+    void convierteNumerosDeserializados() {
+        assertEquals(1500, Dinero.aCentavos((Object) 15));
+        assertEquals(1500, Dinero.aCentavos((Object) 15L));
+        assertEquals(1525, Dinero.aCentavos((Object) new BigDecimal("15.25")));
+        assertEquals(1525, Dinero.aCentavos((Object) "15.25"));
+        //Con Math.round(d*100) daria 101 (1.015*100 = 101.49999999999999); se redondea igual que el texto "1.015".
+        assertEquals(102, Dinero.aCentavos((Object) 1.015d));
+        assertEquals(100, Dinero.aCentavos((Object) 1.005d));
+        assertEquals(115, Dinero.aCentavos((Object) 1.15d));
+        assertEquals(115, Dinero.aCentavos((Object) 1.15f));
+        assertEquals(1999, Dinero.aCentavos((Object) 19.99d));
+        assertThrows(IllegalArgumentException.class, () -> Dinero.aCentavos((Object) null));
+        assertThrows(IllegalArgumentException.class, () -> Dinero.aCentavos((Object) Double.NaN));
+    }
+
+    @Test
+    void losMontosFueraDeRangoNoSeSaturan() {
+        assertThrows(ArithmeticException.class, () -> Dinero.deUnidades(Long.MAX_VALUE / 10));
+        assertThrows(ArithmeticException.class, () -> Dinero.aCentavos((Object) Long.MAX_VALUE));
+        assertThrows(ArithmeticException.class, () -> Dinero.aCentavos((Object) 1e18d));
+        assertThrows(ArithmeticException.class, () -> Dinero.aCentavos("92233720368547758.08"));
+        assertEquals(Long.MAX_VALUE, Dinero.aCentavos("92233720368547758.07"));
+    }
+
+    @Test
+    void aDecimalMantieneDosDecimales() {
+        assertEquals(new BigDecimal("1500.25"), Dinero.aDecimal(150025));
+        assertEquals(new BigDecimal("0.05"), Dinero.aDecimal(5));
+        assertEquals(new BigDecimal("-3.10"), Dinero.aDecimal(-310));
+    }
+
+    @Test
+    void serializaEnPesosYVuelveACentavos() throws Exception {
+        Cliente cliente = Cliente.builder().id(1).maximoDescubierto(150025).build();
+        String json = objectMapper.writeValueAsString(cliente);
+        assertTrue(json.contains("\"maximoDescubierto\":1500.25"), json);
+        assertEquals(150025, objectMapper.readValue(json, Cliente.class).getMaximoDescubierto());
+    }
+
+    @Test
+    void deserializaNumerosYTextos() throws Exception {
+        assertEquals(150025, objectMapper.readValue("{\"presupuestoEstimado\":1500.25}", Obra.class).getPresupuestoEstimado());
+        assertEquals(150000, objectMapper.readValue("{\"presupuestoEstimado\":1500}", Obra.class).getPresupuestoEstimado());
+        assertEquals(150025, objectMapper.readValue("{\"presupuestoEstimado\":\"1500.25\"}", Obra.class).getPresupuestoEstimado());
+        assertEquals(101, objectMapper.readValue("{\"presupuestoEstimado\":1.006}", Obra.class).getPresupuestoEstimado());
+        assertThrows(Exception.class, () -> objectMapper.readValue("{\"presupuestoEstimado\":true}", Obra.class));
+    }
+}
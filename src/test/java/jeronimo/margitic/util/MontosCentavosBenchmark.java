@@ -0,0 +1,74 @@
+package jeronimo.margitic.util;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+//Suma los totales de 100.000 pedidos ya deserializados: el camino anterior (Float.valueOf(total.toString())
+//acumulado en float) contra la conversion a centavos acumulada en long.
+//No es un test: se corre con el main (mvn test-compile y luego ejecutar esta clase con el classpath de test).
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MontosCentavosBenchmark {
+
+    private static final int CANTIDAD_PEDIDOS = 100_000;
+
+    private List<Map<String, Object>> pedidos;
+
+    @Setup
+    public void preparar() throws Exception {
+        Random random = new Random(42);
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < CANTIDAD_PEDIDOS; i++) {
+            json.append(i == 0 ? "" : ",")
+                .append("{\"id\":").append(i)
+                .append(",\"total\":").append(BigDecimal.valueOf(random.nextInt(10_000_000), 2).toPlainString())
+                .append('}');
+        }
+        pedidos = new ObjectMapper().readValue(json.append(']').toString(), new TypeReference<List<Map<String, Object>>>() {});
+    }
+
+    @Benchmark
+    public float sumaFloat() {
+        float total = 0;
+        for (Map<String, Object> pedido : pedidos) {
+            total += Float.valueOf(pedido.get("total").toString());
+        }
+        return total;
+    }
+
+    @Benchmark
+    public long sumaCentavos() {
+        long total = 0;
+        for (Map<String, Object> pedido : pedidos) {
+            total += Dinero.aCentavos(pedido.get("total"));
+        }
+        return total;
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder().include(MontosCentavosBenchmark.class.getSimpleName()).build()).run();
+    }
+}